@@ -2,9 +2,20 @@ package benchmark;
 
 import chapter9.*;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.function.Supplier;
 
 public class BenchmarkDriver {
 
@@ -16,9 +27,49 @@ public class BenchmarkDriver {
     private static final int TRIALS = 7;
     private static final long SEED = 315_351_107L;
 
+    // d-ary heap arity sweep: W2 mixed workload at each resident size
+    private static final int[] DARY_ARITIES = {2, 4, 8, 16};
+    private static final int[] DARY_SIZES = {10_000, 100_000, 1_000_000};
+
+    // bulk load size for heapify vs. repeated enqueue
+    private static final int BULK_N = 1_000_000;
+
+    // merge-heavy workload: shards merged pairwise down to one queue
+    private static final int MELD_SHARDS = 64;
+    private static final int MELD_SHARD_SIZE = 2_000;
+
+    // long-keyed workloads add the W1/W2 priorities to an epoch-nanosecond base
+    private static final long EPOCH_NANOS = 1_700_000_000_000_000_000L;
+
+    // latency mode (--latency [N]): time every Nth operation on its own
+    private static final double[] PERCENTILES = {0.50, 0.90, 0.99, 0.999};
+    private static final int CALIBRATION_OPS = 1_000_000;
+
+    // --check FILE fails the run when a workload's ns/op or B/op grows past
+    // the baseline saved with --save FILE by more than these
+    private static final double TIME_TOLERANCE = 0.25;
+    private static final double ALLOC_TOLERANCE = 0.05;
+    private static final double ALLOC_SLACK = 1.0; // B/op, so rows near zero don't trip on a stray object
+
     public static void main(String[] args) throws Exception {
-        System.out.println("Java ADT Benchmark (nanoTime).");
+        if (args.length > 0 && args[0].equals("--latency")) {
+            runLatencyMode(args.length > 1 ? Integer.parseInt(args[1]) : 1);
+            return;
+        }
+
+        Path save = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--save" -> save = Path.of(args[++i]);
+                case "--check" -> baseline = readBaseline(Path.of(args[++i]));
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        System.out.println("Java ADT Benchmark (nanoTime, thread allocation counter).");
         System.out.println("Warmup ops: " + WARMUP_OPS + ", Measure ops: " + MEASURE_OPS + ", Trials: " + TRIALS);
+        System.out.println("B/op is the median trial; gc is collections / total pause over all measured trials;");
+        System.out.println("peak heap is the largest sum of heap pool peaks in any measured trial.");
         System.out.println();
 
         sanity();
@@ -32,6 +83,93 @@ public class BenchmarkDriver {
         runPQBench("SortedArrayListPQ", new chapter9.SortedArrayListPriorityQueue<Integer>());
         runPQBench("SortedDLinkedListPQ", new chapter9.SortedDLinkedListPriorityQueue<Integer>());
         runPQBench("BinaryHeapPQ", new chapter9.BinaryHeapPriorityQueue<Integer>());
+        runPQBench("IntKeyHeapPQ", new chapter9.IntKeyHeapPriorityQueue<Integer>());
+        for (int d : DARY_ARITIES) {
+            runPQBench("DaryHeapPQ d=" + d, new chapter9.DaryHeapPriorityQueue<Integer>(d));
+        }
+        runPQBench("BucketPQ", new chapter9.BucketPriorityQueue<Integer>(0, 100_000));
+        runPQBench("PairingHeapPQ", new chapter9.PairingHeapPriorityQueue<Integer>());
+        runPQBench("FibonacciHeapPQ", new chapter9.FibonacciHeapPriorityQueue<Integer>());
+        runPQBench("AdaptivePQ", new chapter9.AdaptivePriorityQueue<Integer>());
+
+        runDaryArityBench();
+        runBulkLoadBench();
+
+        runMonotoneBench("BinaryHeapPQ", chapter9.BinaryHeapPriorityQueue::new);
+        runMonotoneBench("IntKeyHeapPQ", chapter9.IntKeyHeapPriorityQueue::new);
+        runMonotoneBench("RadixHeapPQ", () -> new chapter9.RadixHeapPriorityQueue<>(0));
+
+        runMeldBench("BinaryHeapPQ (drain + re-enqueue)", BinaryHeapPriorityQueue<Integer>::new,
+                (dst, src) -> {
+                    while (!src.isEmpty()) {
+                        int v = src.dequeue();
+                        dst.enqueue(v, v);
+                    }
+                });
+        runMeldBench("PairingHeapPQ.meld", PairingHeapPriorityQueue<Integer>::new,
+                PairingHeapPriorityQueue::meld);
+        runMeldBench("FibonacciHeapPQ.meld", FibonacciHeapPriorityQueue<Integer>::new,
+                FibonacciHeapPriorityQueue::meld);
+
+        runKeyWidthBench();
+
+        if (save != null) writeBaseline(save);
+        if (baseline != null) {
+            if (regressions.isEmpty()) {
+                System.out.println("No regressions against the baseline.");
+            } else {
+                System.out.println(regressions.size() + " regression(s) against the baseline:");
+                for (String r : regressions) System.out.println("  " + r);
+                System.exit(1);
+            }
+        }
+    }
+
+    // Per-operation percentiles for the same structures and workloads as the
+    // default mode. Warmup runs are discarded; the measured trials share one
+    // histogram per operation type.
+    private static void runLatencyMode(int sampleEvery) throws Exception {
+        if (sampleEvery < 1) throw new IllegalArgumentException("sample interval must be at least 1");
+        long overhead = calibrateTimer();
+        System.out.println("Java ADT Benchmark, latency mode (nanoTime per operation).");
+        System.out.println("Timing every " + (sampleEvery == 1 ? "" : sampleEvery + "th ") + "op, timer overhead "
+                + overhead + " ns subtracted, Trials: " + TRIALS);
+        System.out.println();
+
+        sanity();
+        Recorder rec = new Recorder(sampleEvery, overhead);
+
+        runStackLatency("ArrayListStack", new chapter9.ArrayListStack<Integer>(), rec);
+        runStackLatency("DLinkedListStack", new chapter9.DLinkedListStack<Integer>(), rec);
+
+        runQueueLatency("ArrayListQueue", new chapter9.ArrayListQueue<Integer>(), rec);
+        runQueueLatency("DLinkedListQueue", new chapter9.DLinkedListQueue<Integer>(), rec);
+
+        runPQLatency("SortedArrayListPQ", new chapter9.SortedArrayListPriorityQueue<Integer>(), rec);
+        runPQLatency("SortedDLinkedListPQ", new chapter9.SortedDLinkedListPriorityQueue<Integer>(), rec);
+        runPQLatency("BinaryHeapPQ", new chapter9.BinaryHeapPriorityQueue<Integer>(), rec);
+        runPQLatency("IntKeyHeapPQ", new chapter9.IntKeyHeapPriorityQueue<Integer>(), rec);
+        for (int d : DARY_ARITIES) {
+            runPQLatency("DaryHeapPQ d=" + d, new chapter9.DaryHeapPriorityQueue<Integer>(d), rec);
+        }
+        runPQLatency("BucketPQ", new chapter9.BucketPriorityQueue<Integer>(0, 100_000), rec);
+        runPQLatency("PairingHeapPQ", new chapter9.PairingHeapPriorityQueue<Integer>(), rec);
+        runPQLatency("FibonacciHeapPQ", new chapter9.FibonacciHeapPriorityQueue<Integer>(), rec);
+        runPQLatency("AdaptivePQ", new chapter9.AdaptivePriorityQueue<Integer>(), rec);
+    }
+
+    // Median cost of an empty start/stop pair, timed through the same code as
+    // a real sample so that it can be subtracted from every sample.
+    private static long calibrateTimer() {
+        Recorder cal = new Recorder(1, 0);
+        for (int round = 0; round < 3; round++) {
+            cal.reset();
+            for (int i = 0; i < CALIBRATION_OPS; i++) {
+                long t = cal.start();
+                cal.stop(Recorder.INSERT, t);
+            }
+        }
+        return cal.hist[Recorder.INSERT].percentile(0.50);
     }
 
     // -----------------------------
@@ -70,6 +208,12 @@ public class BenchmarkDriver {
         pqs.add(new chapter9.SortedArrayListPriorityQueue<>());
         pqs.add(new chapter9.SortedDLinkedListPriorityQueue<>());
         pqs.add(new chapter9.BinaryHeapPriorityQueue<>());
+        pqs.add(new chapter9.IntKeyHeapPriorityQueue<>());
+        for (int d : DARY_ARITIES) pqs.add(new chapter9.DaryHeapPriorityQueue<>(d));
+        pqs.add(new chapter9.BucketPriorityQueue<>(0, 100_000));
+        pqs.add(new chapter9.PairingHeapPriorityQueue<>());
+        pqs.add(new chapter9.FibonacciHeapPriorityQueue<>());
+        pqs.add(new chapter9.AdaptivePriorityQueue<>());
 
         for (PriorityQueue<Integer> pq : pqs) {
             pq.enqueue(5, 50);
@@ -82,6 +226,20 @@ public class BenchmarkDriver {
             if (!pq.isEmpty()) throw new RuntimeException("PQ empty failed");
         }
 
+        // the int extremes are real priorities, not markers; the relaxed
+        // MultiQueue only has to give both back, in either order
+        pqs.add(new chapter9.MultiQueuePriorityQueue<>(1));
+        for (PriorityQueue<Integer> pq : pqs) {
+            if (pq instanceof chapter9.BucketPriorityQueue) continue; // fixed range
+            pq.enqueue(Integer.MAX_VALUE, 2);
+            if (pq.size() != 1 || pq.front() != 2) throw new RuntimeException("PQ MAX_VALUE front failed");
+            pq.enqueue(Integer.MIN_VALUE, 1);
+            int a = pq.dequeue();
+            int b = pq.dequeue();
+            if (a + b != 3 || a == b) throw new RuntimeException("PQ extreme priorities failed");
+            if (!pq.isEmpty()) throw new RuntimeException("PQ empty after extremes failed");
+        }
+
         System.out.println("Sanity checks: OK");
         System.out.println();
     }
@@ -90,58 +248,232 @@ public class BenchmarkDriver {
     // BENCHMARKS
     // -----------------------------
     private static void runStackBench(String name, Stack<Integer> stack) throws Exception {
-        System.out.println("== Stack: " + name + " ==");
+        section("Stack: " + name);
 
         bench("Workload1 bulk push+pop",
-                (warm) -> workloadStackBulk(stack, warm ? WARMUP_OPS : MEASURE_OPS));
+                (warm) -> workloadStackBulk(stack, warm ? WARMUP_OPS : MEASURE_OPS, Recorder.OFF));
 
         bench("Workload2 mixed steady-state",
-                (warm) -> workloadStackMixed(stack, warm ? WARMUP_OPS : MEASURE_OPS));
+                (warm) -> workloadStackMixed(stack, warm ? WARMUP_OPS : MEASURE_OPS, Recorder.OFF));
 
         System.out.println();
     }
 
     private static void runQueueBench(String name, Queue<Integer> queue) throws Exception {
-        System.out.println("== Queue: " + name + " ==");
+        section("Queue: " + name);
 
         bench("Workload1 bulk enq+deq",
-                (warm) -> workloadQueueBulk(queue, warm ? WARMUP_OPS : MEASURE_OPS));
+                (warm) -> workloadQueueBulk(queue, warm ? WARMUP_OPS : MEASURE_OPS, Recorder.OFF));
 
         bench("Workload2 mixed steady-state",
-                (warm) -> workloadQueueMixed(queue, warm ? WARMUP_OPS : MEASURE_OPS));
+                (warm) -> workloadQueueMixed(queue, warm ? WARMUP_OPS : MEASURE_OPS, Recorder.OFF));
 
         System.out.println();
     }
 
     private static void runPQBench(String name, PriorityQueue<Integer> pq) throws Exception {
-        System.out.println("== PriorityQueue: " + name + " ==");
+        section("PriorityQueue: " + name);
 
         bench("Workload1 bulk enq+deq (uniform priorities)",
-                (warm) -> workloadPQBulk(pq, warm ? WARMUP_OPS : MEASURE_OPS, false));
+                (warm) -> workloadPQBulk(pq, warm ? WARMUP_OPS : MEASURE_OPS, false, Recorder.OFF));
 
         bench("Workload2 mixed steady-state (uniform priorities)",
-                (warm) -> workloadPQMixed(pq, warm ? WARMUP_OPS : MEASURE_OPS, false));
+                (warm) -> workloadPQMixed(pq, warm ? WARMUP_OPS : MEASURE_OPS, false, Recorder.OFF));
 
         bench("Workload3 skewed priorities (bulk)",
-                (warm) -> workloadPQBulk(pq, warm ? WARMUP_OPS : MEASURE_OPS, true));
+                (warm) -> workloadPQBulk(pq, warm ? WARMUP_OPS : MEASURE_OPS, true, Recorder.OFF));
+
+        System.out.println();
+    }
+
+    // takes a factory because a radix heap cannot rewind its minimum between runs
+    private static void runMonotoneBench(String name, Supplier<PriorityQueue<Integer>> factory) throws Exception {
+        section("Monotone PriorityQueue: " + name);
+
+        bench("Workload4 monotone timestamps (mixed)",
+                (warm) -> workloadPQMonotone(factory.get(), warm ? WARMUP_OPS : MEASURE_OPS));
+
+        System.out.println();
+    }
+
+    private static <Q extends PriorityQueue<Integer>> void runMeldBench(String name, Supplier<Q> factory,
+                                                                        Meld<Q> meld) throws Exception {
+        section("Merge-heavy: " + name);
+
+        int total = MELD_SHARDS * MELD_SHARD_SIZE;
+        bench("Workload5 " + MELD_SHARDS + " shards merged pairwise + drain 10%", total,
+                (warm) -> workloadPQMeld(factory, meld));
+
+        System.out.println();
+    }
+
+    // Same draws as Workload1/2, so every row should report the same checksums.
+    private static void runKeyWidthBench() throws Exception {
+        IntKeyHeapPriorityQueue<Integer> ints = new IntKeyHeapPriorityQueue<>();
+        LongKeyHeapPriorityQueue<Integer> longs = new LongKeyHeapPriorityQueue<>();
+        ComparatorPriorityQueue<Event> events = new ComparatorPriorityQueue<>(Event::time, Long::compare);
+
+        section("Key width: IntKeyHeapPQ (int priorities)");
+        bench("Workload1 bulk enq+deq", (warm) -> workloadPQBulk(ints, warm ? WARMUP_OPS : MEASURE_OPS, false, Recorder.OFF));
+        bench("Workload2 mixed steady-state", (warm) -> workloadPQMixed(ints, warm ? WARMUP_OPS : MEASURE_OPS, false, Recorder.OFF));
+        System.out.println();
+
+        section("Key width: LongKeyHeapPQ (epoch-nanosecond long priorities)");
+        bench("Workload1 bulk enq+deq", (warm) -> workloadLongBulk(longs, warm ? WARMUP_OPS : MEASURE_OPS));
+        bench("Workload2 mixed steady-state", (warm) -> workloadLongMixed(longs, warm ? WARMUP_OPS : MEASURE_OPS));
+        System.out.println();
+
+        section("Key width: ComparatorPQ (Event objects, extracted Long keys)");
+        bench("Workload1 bulk enq+deq", (warm) -> workloadEventBulk(events, warm ? WARMUP_OPS : MEASURE_OPS));
+        bench("Workload2 mixed steady-state", (warm) -> workloadEventMixed(events, warm ? WARMUP_OPS : MEASURE_OPS));
+        System.out.println();
+    }
+
+    private static void runDaryArityBench() throws Exception {
+        section("DaryHeapPQ arity sweep (Workload2 mixed, uniform priorities)");
+
+        for (int size : DARY_SIZES) {
+            for (int d : DARY_ARITIES) {
+                PriorityQueue<Integer> pq = new chapter9.DaryHeapPriorityQueue<>(d);
+                bench("size=" + size + " d=" + d,
+                        (warm) -> workloadPQMixed(pq, warm ? WARMUP_OPS : MEASURE_OPS, false, size, Recorder.OFF));
+            }
+        }
+
+        System.out.println();
+    }
+
+    private static void runBulkLoadBench() throws Exception {
+        section("BinaryHeapPQ bulk load of " + BULK_N + " items, then drain");
+
+        int[] pr = new int[BULK_N];
+        Integer[] items = new Integer[BULK_N];
+        Random rng = new Random(SEED);
+        for (int i = 0; i < BULK_N; i++) {
+            pr[i] = rng.nextInt(10_000);
+            items[i] = i;
+        }
+
+        bench("n x enqueue + n x dequeue", BULK_N, (warm) -> {
+            long sum = 0;
+            long start = openWindow();
+            BinaryHeapPriorityQueue<Integer> pq = new BinaryHeapPriorityQueue<>();
+            for (int i = 0; i < BULK_N; i++) pq.enqueue(pr[i], items[i]);
+            while (!pq.isEmpty()) sum += pq.dequeue();
+            return new Result(System.nanoTime() - start, sum, closeWindow());
+        });
+
+        bench("heapify ctor + drainSorted", BULK_N, (warm) -> {
+            long sum = 0;
+            long start = openWindow();
+            BinaryHeapPriorityQueue<Integer> pq = new BinaryHeapPriorityQueue<>(pr, items);
+            Integer[] out = new Integer[BULK_N];
+            pq.drainSorted(out);
+            for (Integer v : out) sum += v;
+            return new Result(System.nanoTime() - start, sum, closeWindow());
+        });
 
         System.out.println();
     }
 
+    private static void runStackLatency(String name, Stack<Integer> stack, Recorder rec) throws Exception {
+        System.out.println("== Stack latency: " + name + " ==");
+
+        latency("Workload1 bulk push+pop", rec,
+                (warm) -> workloadStackBulk(stack, warm ? WARMUP_OPS : MEASURE_OPS, rec));
+
+        latency("Workload2 mixed steady-state", rec,
+                (warm) -> workloadStackMixed(stack, warm ? WARMUP_OPS : MEASURE_OPS, rec));
+
+        System.out.println();
+    }
+
+    private static void runQueueLatency(String name, Queue<Integer> queue, Recorder rec) throws Exception {
+        System.out.println("== Queue latency: " + name + " ==");
+
+        latency("Workload1 bulk enq+deq", rec,
+                (warm) -> workloadQueueBulk(queue, warm ? WARMUP_OPS : MEASURE_OPS, rec));
+
+        latency("Workload2 mixed steady-state", rec,
+                (warm) -> workloadQueueMixed(queue, warm ? WARMUP_OPS : MEASURE_OPS, rec));
+
+        System.out.println();
+    }
+
+    private static void runPQLatency(String name, PriorityQueue<Integer> pq, Recorder rec) throws Exception {
+        System.out.println("== PriorityQueue latency: " + name + " ==");
+
+        latency("Workload1 bulk enq+deq (uniform priorities)", rec,
+                (warm) -> workloadPQBulk(pq, warm ? WARMUP_OPS : MEASURE_OPS, false, rec));
+
+        latency("Workload2 mixed steady-state (uniform priorities)", rec,
+                (warm) -> workloadPQMixed(pq, warm ? WARMUP_OPS : MEASURE_OPS, false, rec));
+
+        latency("Workload3 skewed priorities (bulk)", rec,
+                (warm) -> workloadPQBulk(pq, warm ? WARMUP_OPS : MEASURE_OPS, true, rec));
+
+        System.out.println();
+    }
+
+    private static void latency(String label, Recorder rec, BenchRun run) throws Exception {
+        // warmup, then throw away what it recorded
+        for (int i = 0; i < 2; i++) run.run(true);
+        rec.reset();
+
+        long[] sums = new long[TRIALS];
+        for (int t = 0; t < TRIALS; t++) {
+            sums[t] = run.run(false).checksum;
+        }
+        for (int i = 1; i < sums.length; i++) {
+            if (sums[i] != sums[0]) {
+                throw new RuntimeException("Checksum mismatch across trials: " + sums[0] + " vs " + sums[i]);
+            }
+        }
+
+        System.out.printf("  %-50s  checksum: %d%n", label, sums[0]);
+        for (int op = 0; op < Recorder.NAMES.length; op++) {
+            LatencyHistogram h = rec.hist[op];
+            if (h.count() == 0) continue;
+            System.out.printf("    %-7s n=%-8d", Recorder.NAMES[op], h.count());
+            for (double q : PERCENTILES) {
+                System.out.printf("  p%s: %7d", percentileLabel(q), h.percentile(q));
+            }
+            System.out.printf("  max: %9d ns%n", h.max());
+        }
+    }
+
+    private static String percentileLabel(double q) {
+        double p = q * 100;
+        return p == Math.rint(p) ? String.valueOf((int) p) : String.valueOf(p);
+    }
+
     private static void bench(String label, BenchRun run) throws Exception {
+        bench(label, MEASURE_OPS, run);
+    }
+
+    private static void bench(String label, int ops, BenchRun run) throws Exception {
         // warmup
         for (int i = 0; i < 2; i++) run.run(true);
 
         long[] times = new long[TRIALS];
         long[] sums = new long[TRIALS];
+        long[] bytes = new long[TRIALS];
+        long gcCount = 0;
+        long gcMillis = 0;
+        long peakHeap = 0;
 
         for (int t = 0; t < TRIALS; t++) {
             Result r = run.run(false);
             times[t] = r.nanos;
             sums[t] = r.checksum;
+            bytes[t] = r.memory.bytes();
+            gcCount += r.memory.gcCount();
+            gcMillis += r.memory.gcMillis();
+            peakHeap = Math.max(peakHeap, r.memory.peakHeap());
         }
 
         Arrays.sort(times);
+        Arrays.sort(bytes);
         long median = times[times.length / 2];
 
         for (int i = 1; i < sums.length; i++) {
@@ -150,110 +482,406 @@ public class BenchmarkDriver {
             }
         }
 
-        double nsPerOp = (double) median / (double) MEASURE_OPS;
-        System.out.printf("  %-38s  median: %10.2f ns/op   checksum: %d%n", label, nsPerOp, sums[0]);
+        double nsPerOp = (double) median / (double) ops;
+        double bytesPerOp = (double) bytes[bytes.length / 2] / (double) ops;
+        System.out.printf("  %-38s  median: %10.2f ns/op %9.1f B/op   gc: %3d / %4d ms   peak heap: %5d MB"
+                        + "   checksum: %d%s%n",
+                label, nsPerOp, bytesPerOp, gcCount, gcMillis, peakHeap >> 20, sums[0],
+                checkThresholds(label, nsPerOp, bytesPerOp));
+    }
+
+    // -----------------------------
+    // THRESHOLDS
+    // -----------------------------
+    // Rows are keyed by section and label, e.g.
+    // "Stack: ArrayListStack / Workload1 bulk push+pop".
+    private static String section = "";
+    private static final Map<String, double[]> measured = new LinkedHashMap<>();
+    private static Map<String, double[]> baseline;
+    private static final ArrayList<String> regressions = new ArrayList<>();
+
+    private static void section(String title) {
+        section = title;
+        System.out.println("== " + title + " ==");
+    }
+
+    // Records the row for --save and, under --check, returns what to append
+    // to the printed line.
+    private static String checkThresholds(String label, double nsPerOp, double bytesPerOp) {
+        String key = section + " / " + label;
+        measured.put(key, new double[]{nsPerOp, bytesPerOp});
+        if (baseline == null) return "";
+
+        double[] base = baseline.get(key);
+        if (base == null) return "   (no baseline)";
+        String verdict = "";
+        if (nsPerOp > base[0] * (1 + TIME_TOLERANCE)) {
+            verdict += String.format(" time %.2f -> %.2f ns/op", base[0], nsPerOp);
+        }
+        if (bytesPerOp > base[1] * (1 + ALLOC_TOLERANCE) + ALLOC_SLACK) {
+            verdict += String.format(" alloc %.1f -> %.1f B/op", base[1], bytesPerOp);
+        }
+        if (verdict.isEmpty()) return "";
+        regressions.add(key + ":" + verdict);
+        return "   REGRESSION:" + verdict;
+    }
+
+    // one row per line: ns/op, B/op and the key, tab separated
+    private static void writeBaseline(Path file) throws Exception {
+        ArrayList<String> lines = new ArrayList<>();
+        for (Map.Entry<String, double[]> e : measured.entrySet()) {
+            lines.add(e.getValue()[0] + "\t" + e.getValue()[1] + "\t" + e.getKey());
+        }
+        Files.write(file, lines);
+        System.out.println("Baseline of " + lines.size() + " rows written to " + file);
+    }
+
+    private static Map<String, double[]> readBaseline(Path file) throws Exception {
+        Map<String, double[]> rows = new HashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank()) continue;
+            String[] f = line.split("\t", 3);
+            rows.put(f[2], new double[]{Double.parseDouble(f[0]), Double.parseDouble(f[1])});
+        }
+        return rows;
+    }
+
+    // -----------------------------
+    // MEMORY
+    // -----------------------------
+    // The workloads bracket their timed loop with openWindow()/closeWindow()
+    // instead of bare nanoTime() calls, so the allocation and GC figures cover
+    // exactly the interval that is timed.
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final List<GarbageCollectorMXBean> GC_BEANS = ManagementFactory.getGarbageCollectorMXBeans();
+    private static final List<MemoryPoolMXBean> HEAP_POOLS = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(p -> p.getType() == MemoryType.HEAP)
+            .toList();
+
+    private static long windowBytes;
+    private static long windowGcCount;
+    private static long windowGcMillis;
+
+    // Snapshots the counters, then reads the clock last so none of this is timed.
+    private static long openWindow() {
+        for (MemoryPoolMXBean p : HEAP_POOLS) p.resetPeakUsage();
+        windowGcCount = gcCount();
+        windowGcMillis = gcMillis();
+        windowBytes = THREAD_BEAN.getCurrentThreadAllocatedBytes();
+        return System.nanoTime();
+    }
+
+    // Called after the closing nanoTime(); reads the allocation counter first,
+    // before anything here allocates.
+    private static Memory closeWindow() {
+        long bytes = THREAD_BEAN.getCurrentThreadAllocatedBytes() - windowBytes;
+        // pools peak at different moments, so the sum is an upper bound
+        long peak = 0;
+        for (MemoryPoolMXBean p : HEAP_POOLS) peak += p.getPeakUsage().getUsed();
+        return new Memory(bytes, gcCount() - windowGcCount, gcMillis() - windowGcMillis, peak);
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : GC_BEANS) n += Math.max(0, gc.getCollectionCount());
+        return n;
+    }
+
+    private static long gcMillis() {
+        long ms = 0;
+        for (GarbageCollectorMXBean gc : GC_BEANS) ms += Math.max(0, gc.getCollectionTime());
+        return ms;
     }
 
     // -----------------------------
     // WORKLOADS
     // -----------------------------
-    private static Result workloadStackBulk(Stack<Integer> s, int ops) throws Exception {
+    // Each workload takes a Recorder: latency mode brackets every operation
+    // with rec.start()/rec.stop(), the default mode passes Recorder.OFF.
+
+    private static Result workloadStackBulk(Stack<Integer> s, int ops, Recorder rec) throws Exception {
         resetStack(s);
         int n = ops / 2;
 
         long sum = 0;
-        long start = System.nanoTime();
-        for (int i = 0; i < n; i++) s.push(i);
-        for (int i = 0; i < n; i++) sum += s.pop();
+        long start = openWindow();
+        for (int i = 0; i < n; i++) {
+            long t = rec.start();
+            s.push(i);
+            rec.stop(Recorder.INSERT, t);
+        }
+        for (int i = 0; i < n; i++) {
+            long t = rec.start();
+            int v = s.pop();
+            rec.stop(Recorder.REMOVE, t);
+            sum += v;
+        }
         long end = System.nanoTime();
 
-        return new Result(end - start, sum);
+        return new Result(end - start, sum, closeWindow());
     }
 
-    private static Result workloadStackMixed(Stack<Integer> s, int ops) throws Exception {
+    private static Result workloadStackMixed(Stack<Integer> s, int ops, Recorder rec) throws Exception {
         resetStack(s);
         Random rng = new Random(SEED);
 
         for (int i = 0; i < 10_000; i++) s.push(rng.nextInt());
 
         long sum = 0;
-        long start = System.nanoTime();
+        long start = openWindow();
         for (int i = 0; i < ops; i++) {
             int r = rng.nextInt(100);
-            if (r < 60) s.push(rng.nextInt());
-            else if (r < 95) { if (!s.isEmpty()) sum += s.pop(); }
-            else { if (!s.isEmpty()) sum += s.top(); }
+            if (r < 60) {
+                int v = rng.nextInt();
+                long t = rec.start();
+                s.push(v);
+                rec.stop(Recorder.INSERT, t);
+            } else if (r < 95) {
+                if (!s.isEmpty()) {
+                    long t = rec.start();
+                    int v = s.pop();
+                    rec.stop(Recorder.REMOVE, t);
+                    sum += v;
+                }
+            } else {
+                if (!s.isEmpty()) {
+                    long t = rec.start();
+                    int v = s.top();
+                    rec.stop(Recorder.PEEK, t);
+                    sum += v;
+                }
+            }
         }
         long end = System.nanoTime();
 
-        return new Result(end - start, sum);
+        return new Result(end - start, sum, closeWindow());
     }
 
-    private static Result workloadQueueBulk(Queue<Integer> q, int ops) throws Exception {
+    private static Result workloadQueueBulk(Queue<Integer> q, int ops, Recorder rec) throws Exception {
         resetQueue(q);
         int n = ops / 2;
 
         long sum = 0;
-        long start = System.nanoTime();
-        for (int i = 0; i < n; i++) q.enqueue(i);
-        for (int i = 0; i < n; i++) sum += q.dequeue();
+        long start = openWindow();
+        for (int i = 0; i < n; i++) {
+            long t = rec.start();
+            q.enqueue(i);
+            rec.stop(Recorder.INSERT, t);
+        }
+        for (int i = 0; i < n; i++) {
+            long t = rec.start();
+            int v = q.dequeue();
+            rec.stop(Recorder.REMOVE, t);
+            sum += v;
+        }
         long end = System.nanoTime();
 
-        return new Result(end - start, sum);
+        return new Result(end - start, sum, closeWindow());
     }
 
-    private static Result workloadQueueMixed(Queue<Integer> q, int ops) throws Exception {
+    private static Result workloadQueueMixed(Queue<Integer> q, int ops, Recorder rec) throws Exception {
         resetQueue(q);
         Random rng = new Random(SEED);
 
         for (int i = 0; i < 10_000; i++) q.enqueue(rng.nextInt());
 
         long sum = 0;
-        long start = System.nanoTime();
+        long start = openWindow();
         for (int i = 0; i < ops; i++) {
             int r = rng.nextInt(100);
-            if (r < 60) q.enqueue(rng.nextInt());
-            else if (r < 95) { if (!q.isEmpty()) sum += q.dequeue(); }
-            else { if (!q.isEmpty()) sum += q.front(); }
+            if (r < 60) {
+                int v = rng.nextInt();
+                long t = rec.start();
+                q.enqueue(v);
+                rec.stop(Recorder.INSERT, t);
+            } else if (r < 95) {
+                if (!q.isEmpty()) {
+                    long t = rec.start();
+                    int v = q.dequeue();
+                    rec.stop(Recorder.REMOVE, t);
+                    sum += v;
+                }
+            } else {
+                if (!q.isEmpty()) {
+                    long t = rec.start();
+                    int v = q.front();
+                    rec.stop(Recorder.PEEK, t);
+                    sum += v;
+                }
+            }
         }
         long end = System.nanoTime();
 
-        return new Result(end - start, sum);
+        return new Result(end - start, sum, closeWindow());
     }
 
-    private static Result workloadPQBulk(PriorityQueue<Integer> pq, int ops, boolean skewed) throws Exception {
+    private static Result workloadPQBulk(PriorityQueue<Integer> pq, int ops, boolean skewed, Recorder rec)
+            throws Exception {
         resetPQ(pq);
         Random rng = new Random(SEED);
 
         int n = ops / 2;
         long sum = 0;
 
-        long start = System.nanoTime();
+        long start = openWindow();
         for (int i = 0; i < n; i++) {
             int pr = skewed ? skewedPriority(rng) : rng.nextInt(10_000);
+            long t = rec.start();
             pq.enqueue(pr, i);
+            rec.stop(Recorder.INSERT, t);
+        }
+        for (int i = 0; i < n; i++) {
+            long t = rec.start();
+            int v = pq.dequeue();
+            rec.stop(Recorder.REMOVE, t);
+            sum += v;
         }
-        for (int i = 0; i < n; i++) sum += pq.dequeue();
         long end = System.nanoTime();
 
-        return new Result(end - start, sum);
+        return new Result(end - start, sum, closeWindow());
+    }
+
+    private static Result workloadPQMixed(PriorityQueue<Integer> pq, int ops, boolean skewed, Recorder rec)
+            throws Exception {
+        return workloadPQMixed(pq, ops, skewed, 10_000, rec);
     }
 
-    private static Result workloadPQMixed(PriorityQueue<Integer> pq, int ops, boolean skewed) throws Exception {
+    private static Result workloadPQMixed(PriorityQueue<Integer> pq, int ops, boolean skewed, int prefill,
+                                          Recorder rec) throws Exception {
         resetPQ(pq);
         Random rng = new Random(SEED);
 
-        for (int i = 0; i < 10_000; i++) {
+        for (int i = 0; i < prefill; i++) {
             int pr = skewed ? skewedPriority(rng) : rng.nextInt(10_000);
             pq.enqueue(pr, rng.nextInt());
         }
 
         long sum = 0;
-        long start = System.nanoTime();
+        long start = openWindow();
         for (int i = 0; i < ops; i++) {
             int r = rng.nextInt(100);
             if (r < 60) {
                 int pr = skewed ? skewedPriority(rng) : rng.nextInt(10_000);
+                int v = rng.nextInt();
+                long t = rec.start();
+                pq.enqueue(pr, v);
+                rec.stop(Recorder.INSERT, t);
+            } else if (r < 95) {
+                if (!pq.isEmpty()) {
+                    long t = rec.start();
+                    int v = pq.dequeue();
+                    rec.stop(Recorder.REMOVE, t);
+                    sum += v;
+                }
+            } else {
+                if (!pq.isEmpty()) {
+                    long t = rec.start();
+                    int v = pq.front();
+                    rec.stop(Recorder.PEEK, t);
+                    sum += v;
+                }
+            }
+        }
+        long end = System.nanoTime();
+
+        return new Result(end - start, sum, closeWindow());
+    }
+
+    // Event-simulation style: new priorities are "now" plus a random delay, and
+    // "now" advances to each dequeued priority, so keys never go backwards.
+    private static Result workloadPQMonotone(PriorityQueue<Integer> pq, int ops) throws Exception {
+        Random rng = new Random(SEED);
+        int now = 0;
+
+        for (int i = 0; i < 10_000; i++) {
+            int pr = now + rng.nextInt(10_000);
+            pq.enqueue(pr, pr);
+        }
+
+        long sum = 0;
+        long start = openWindow();
+        for (int i = 0; i < ops; i++) {
+            if (rng.nextInt(100) < 50 || pq.isEmpty()) {
+                int pr = now + rng.nextInt(10_000);
+                pq.enqueue(pr, pr);
+            } else {
+                now = pq.dequeue();
+                sum += now;
+            }
+        }
+        long end = System.nanoTime();
+
+        return new Result(end - start, sum, closeWindow());
+    }
+
+    // Fills MELD_SHARDS shards, then times merging them pairwise into one queue
+    // and dequeuing the first 10%. Items equal their priority so a queue without
+    // meld can re-enqueue what it drains.
+    private static <Q extends PriorityQueue<Integer>> Result workloadPQMeld(Supplier<Q> factory, Meld<Q> meld)
+            throws Exception {
+        Random rng = new Random(SEED);
+        ArrayList<Q> shards = new ArrayList<>();
+        for (int s = 0; s < MELD_SHARDS; s++) {
+            Q q = factory.get();
+            for (int i = 0; i < MELD_SHARD_SIZE; i++) {
+                int pr = rng.nextInt(10_000);
+                q.enqueue(pr, pr);
+            }
+            shards.add(q);
+        }
+
+        long sum = 0;
+        long start = openWindow();
+        while (shards.size() > 1) {
+            ArrayList<Q> next = new ArrayList<>();
+            for (int i = 0; i + 1 < shards.size(); i += 2) {
+                meld.into(shards.get(i), shards.get(i + 1));
+                next.add(shards.get(i));
+            }
+            if (shards.size() % 2 == 1) next.add(shards.get(shards.size() - 1));
+            shards = next;
+        }
+        Q all = shards.get(0);
+        int drain = all.size() / 10;
+        for (int i = 0; i < drain; i++) sum += all.dequeue();
+        long end = System.nanoTime();
+
+        return new Result(end - start, sum, closeWindow());
+    }
+
+    private static Result workloadLongBulk(LongPriorityQueue<Integer> pq, int ops) throws Exception {
+        while (!pq.isEmpty()) pq.dequeue();
+        Random rng = new Random(SEED);
+
+        int n = ops / 2;
+        long sum = 0;
+
+        long start = openWindow();
+        for (int i = 0; i < n; i++) {
+            pq.enqueue(EPOCH_NANOS + rng.nextInt(10_000), i);
+        }
+        for (int i = 0; i < n; i++) sum += pq.dequeue();
+        long end = System.nanoTime();
+
+        return new Result(end - start, sum, closeWindow());
+    }
+
+    private static Result workloadLongMixed(LongPriorityQueue<Integer> pq, int ops) throws Exception {
+        while (!pq.isEmpty()) pq.dequeue();
+        Random rng = new Random(SEED);
+
+        for (int i = 0; i < 10_000; i++) {
+            long pr = EPOCH_NANOS + rng.nextInt(10_000);
+            pq.enqueue(pr, rng.nextInt());
+        }
+
+        long sum = 0;
+        long start = openWindow();
+        for (int i = 0; i < ops; i++) {
+            int r = rng.nextInt(100);
+            if (r < 60) {
+                long pr = EPOCH_NANOS + rng.nextInt(10_000);
                 pq.enqueue(pr, rng.nextInt());
             } else if (r < 95) {
                 if (!pq.isEmpty()) sum += pq.dequeue();
@@ -263,7 +891,51 @@ public class BenchmarkDriver {
         }
         long end = System.nanoTime();
 
-        return new Result(end - start, sum);
+        return new Result(end - start, sum, closeWindow());
+    }
+
+    private static Result workloadEventBulk(ComparatorPriorityQueue<Event> pq, int ops) throws Exception {
+        while (!pq.isEmpty()) pq.dequeue();
+        Random rng = new Random(SEED);
+
+        int n = ops / 2;
+        long sum = 0;
+
+        long start = openWindow();
+        for (int i = 0; i < n; i++) {
+            pq.enqueue(new Event(EPOCH_NANOS + rng.nextInt(10_000), i));
+        }
+        for (int i = 0; i < n; i++) sum += pq.dequeue().value();
+        long end = System.nanoTime();
+
+        return new Result(end - start, sum, closeWindow());
+    }
+
+    private static Result workloadEventMixed(ComparatorPriorityQueue<Event> pq, int ops) throws Exception {
+        while (!pq.isEmpty()) pq.dequeue();
+        Random rng = new Random(SEED);
+
+        for (int i = 0; i < 10_000; i++) {
+            long pr = EPOCH_NANOS + rng.nextInt(10_000);
+            pq.enqueue(new Event(pr, rng.nextInt()));
+        }
+
+        long sum = 0;
+        long start = openWindow();
+        for (int i = 0; i < ops; i++) {
+            int r = rng.nextInt(100);
+            if (r < 60) {
+                long pr = EPOCH_NANOS + rng.nextInt(10_000);
+                pq.enqueue(new Event(pr, rng.nextInt()));
+            } else if (r < 95) {
+                if (!pq.isEmpty()) sum += pq.dequeue().value();
+            } else {
+                if (!pq.isEmpty()) sum += pq.front().value();
+            }
+        }
+        long end = System.nanoTime();
+
+        return new Result(end - start, sum, closeWindow());
     }
 
     private static int skewedPriority(Random rng) {
@@ -294,12 +966,66 @@ public class BenchmarkDriver {
         Result run(boolean warmup) throws Exception;
     }
 
+    private interface Meld<Q> {
+        void into(Q dst, Q src) throws Exception;
+    }
+
+    // a timestamped payload, the shape ComparatorPQ is meant for
+    private record Event(long time, int value) {
+    }
+
+    // Times every Nth operation into one histogram per operation type.
+    // start() returns NOT_SAMPLED for the operations in between, and stop()
+    // ignores those, so unsampled operations only pay for a counter. OFF
+    // never samples and is what the default mode passes to the workloads.
+    private static final class Recorder {
+        static final int INSERT = 0;
+        static final int REMOVE = 1;
+        static final int PEEK = 2;
+        static final String[] NAMES = {"insert", "remove", "peek"};
+        static final long NOT_SAMPLED = Long.MIN_VALUE;
+        static final Recorder OFF = new Recorder(0, 0);
+
+        final LatencyHistogram[] hist = {new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram()};
+        final int every;
+        final long overhead;
+        int countdown;
+
+        Recorder(int every, long overhead) {
+            this.every = every;
+            this.overhead = overhead;
+            this.countdown = every;
+        }
+
+        long start() {
+            if (every == 0 || --countdown > 0) return NOT_SAMPLED;
+            countdown = every;
+            return System.nanoTime();
+        }
+
+        void stop(int op, long start) {
+            if (start == NOT_SAMPLED) return;
+            hist[op].record(System.nanoTime() - start - overhead);
+        }
+
+        void reset() {
+            for (LatencyHistogram h : hist) h.reset();
+            countdown = every;
+        }
+    }
+
+    // allocation and GC activity inside one measured interval
+    private record Memory(long bytes, long gcCount, long gcMillis, long peakHeap) {
+    }
+
     private static class Result {
         final long nanos;
         final long checksum;
-        Result(long nanos, long checksum) {
+        final Memory memory;
+        Result(long nanos, long checksum, Memory memory) {
             this.nanos = nanos;
             this.checksum = checksum;
+            this.memory = memory;
         }
     }
 }
@@ -0,0 +1,248 @@
+package benchmark;
+
+import chapter9.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+public class ConcurrentPQBenchmark {
+
+    // -----------------------------
+    // CONFIG
+    // -----------------------------
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+    private static final int OPS_PER_THREAD = 200_000;
+    private static final int PREFILL = 10_000;
+    private static final int TRIALS = 5;
+    private static final long SEED = 315_351_107L;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Concurrent PriorityQueue Benchmark (50% enqueue / 50% dequeue).");
+        System.out.println("Ops/thread: " + OPS_PER_THREAD + ", Prefill: " + PREFILL + ", Trials: " + TRIALS);
+        System.out.println();
+
+        ArrayList<String> names = new ArrayList<>();
+        // each factory gets the thread count, which MultiQueue uses to size its shards
+        ArrayList<IntFunction<PriorityQueue<Integer>>> impls = new ArrayList<>();
+
+        names.add("SynchronizedBinaryHeapPQ");
+        impls.add(t -> new SynchronizedPriorityQueue<>(new BinaryHeapPriorityQueue<>()));
+        names.add("FlatCombiningPQ");
+        impls.add(t -> new FlatCombiningPriorityQueue<>());
+        names.add("MultiQueuePQ (c=2)");
+        impls.add(t -> new MultiQueuePriorityQueue<>(t, 2));
+        names.add("PriorityBlockingQueue");
+        impls.add(t -> new BlockingQueueAdapter<>());
+        names.add("ConcurrentSkipListMap");
+        impls.add(t -> new SkipListAdapter<>());
+
+        System.out.printf("%-26s", "threads");
+        for (int t : THREADS) System.out.printf("%10d", t);
+        System.out.println("   (Mops/s, median)");
+
+        for (int i = 0; i < impls.size(); i++) {
+            System.out.printf("%-26s", names.get(i));
+            for (int t : THREADS) {
+                System.out.printf("%10.2f", bench(impls.get(i), t));
+            }
+            System.out.println();
+        }
+
+        System.out.println();
+        System.out.println("MultiQueuePQ (c=2) rank error: how many better elements were queued at each dequeue");
+        for (int t : THREADS) {
+            rankError(t);
+        }
+    }
+
+    // -----------------------------
+    // BENCHMARK
+    // -----------------------------
+    static double bench(IntFunction<PriorityQueue<Integer>> factory, int threads) throws Exception {
+        // warmup
+        run(factory.apply(threads), threads);
+
+        double[] mops = new double[TRIALS];
+        for (int t = 0; t < TRIALS; t++) {
+            long nanos = run(factory.apply(threads), threads);
+            mops[t] = (double) threads * OPS_PER_THREAD / nanos * 1_000.0;
+        }
+        Arrays.sort(mops);
+        return mops[mops.length / 2];
+    }
+
+    // Returns wall time from the moment all workers are released until the last one finishes.
+    static long run(PriorityQueue<Integer> pq, int threads) throws Exception {
+        SplittableRandom seedRng = new SplittableRandom(SEED);
+        for (int i = 0; i < PREFILL; i++) pq.enqueue(seedRng.nextInt(10_000), i);
+
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        Thread[] workers = new Thread[threads];
+        for (int w = 0; w < threads; w++) {
+            SplittableRandom rng = seedRng.split();
+            workers[w] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < OPS_PER_THREAD; i++) {
+                        if (rng.nextBoolean()) {
+                            pq.enqueue(rng.nextInt(10_000), i);
+                        } else {
+                            try {
+                                pq.dequeue();
+                            } catch (Exception empty) {
+                                // another thread drained it first
+                            }
+                        }
+                    }
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+            workers[w].start();
+        }
+
+        start.await();
+        long begin = System.nanoTime();
+        for (Thread w : workers) w.join();
+        return System.nanoTime() - begin;
+    }
+
+    // Runs the mixed workload once with an observer that tracks every queued
+    // priority in a Fenwick tree, so each dequeue's rank is a prefix sum.
+    static void rankError(int threads) throws Exception {
+        MultiQueuePriorityQueue<Integer> pq = new MultiQueuePriorityQueue<>(threads, 2);
+        RankTracker tracker = new RankTracker(10_000);
+        pq.setObserver(tracker);
+        run(pq, threads);
+
+        long[] ranks = Arrays.copyOf(tracker.ranks, tracker.count);
+        Arrays.sort(ranks);
+        long total = 0;
+        for (long r : ranks) total += r;
+        System.out.printf("  threads=%-3d  dequeues: %9d   mean: %7.2f   p50: %5d   p99: %6d   max: %7d%n",
+                threads, ranks.length, (double) total / Math.max(1, ranks.length),
+                pct(ranks, 0.50), pct(ranks, 0.99), ranks.length == 0 ? 0 : ranks[ranks.length - 1]);
+    }
+
+    private static long pct(long[] sorted, double q) {
+        if (sorted.length == 0) return 0;
+        return sorted[(int) Math.min(sorted.length - 1, (long) (q * sorted.length))];
+    }
+
+    // -----------------------------
+    // SMALL TYPES
+    // -----------------------------
+
+    // Serializes observer calls; fine for measuring quality, not for timing.
+    static class RankTracker implements MultiQueuePriorityQueue.Observer {
+        private final long[] tree;
+        long[] ranks = new long[1 << 16];
+        int count;
+
+        RankTracker(int maxPriority) {
+            tree = new long[maxPriority + 2];
+        }
+
+        @Override
+        public synchronized void enqueued(int priority) {
+            for (int i = priority + 1; i < tree.length; i += i & -i) tree[i]++;
+        }
+
+        @Override
+        public synchronized void dequeued(int priority) {
+            // elements with a strictly smaller priority number were better choices
+            long better = 0;
+            for (int i = priority; i > 0; i -= i & -i) better += tree[i];
+            for (int i = priority + 1; i < tree.length; i += i & -i) tree[i]--;
+
+            if (count == ranks.length) ranks = Arrays.copyOf(ranks, count * 2);
+            ranks[count++] = better;
+        }
+    }
+
+    // Presents ConcurrentSkipListMap through the chapter9 interface. Keys pack the
+    // priority above a sequence number so equal priorities do not collide.
+    static class SkipListAdapter<T> implements PriorityQueue<T> {
+
+        private final ConcurrentSkipListMap<Long, T> map = new ConcurrentSkipListMap<>();
+        private final AtomicInteger seq = new AtomicInteger();
+
+        @Override
+        public void enqueue(int priority, T data) {
+            map.put(((long) priority << 32) | (seq.getAndIncrement() & 0xFFFF_FFFFL), data);
+        }
+
+        @Override
+        public T dequeue() throws Exception {
+            Map.Entry<Long, T> e = map.pollFirstEntry();
+            if (e == null) throw new Exception("PriorityQueue is empty");
+            return e.getValue();
+        }
+
+        @Override
+        public T front() throws Exception {
+            Map.Entry<Long, T> e = map.firstEntry();
+            if (e == null) throw new Exception("PriorityQueue is empty");
+            return e.getValue();
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+    }
+
+    // Presents java.util.concurrent.PriorityBlockingQueue through the chapter9 interface.
+    static class BlockingQueueAdapter<T> implements PriorityQueue<T> {
+
+        private record Entry<T>(int priority, T data) implements Comparable<Entry<T>> {
+            @Override
+            public int compareTo(Entry<T> o) {
+                return Integer.compare(priority, o.priority);
+            }
+        }
+
+        private final PriorityBlockingQueue<Entry<T>> pq = new PriorityBlockingQueue<>();
+
+        @Override
+        public void enqueue(int priority, T data) {
+            pq.add(new Entry<>(priority, data));
+        }
+
+        @Override
+        public T dequeue() throws Exception {
+            Entry<T> e = pq.poll();
+            if (e == null) throw new Exception("PriorityQueue is empty");
+            return e.data();
+        }
+
+        @Override
+        public T front() throws Exception {
+            Entry<T> e = pq.peek();
+            if (e == null) throw new Exception("PriorityQueue is empty");
+            return e.data();
+        }
+
+        @Override
+        public int size() {
+            return pq.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return pq.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package benchmark;
+
+import chapter9.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class DijkstraBenchmark {
+
+    // -----------------------------
+    // CONFIG
+    // -----------------------------
+    private static final int NODES = 200_000;
+    private static final int EDGES_PER_NODE = 8;
+    private static final int MAX_WEIGHT = 100;
+    private static final int SOURCES = 5;
+    private static final int TRIALS = 5;
+    private static final long SEED = 315_351_107L;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Dijkstra Benchmark: lazy deletion vs. decreaseKey.");
+        System.out.println("Nodes: " + NODES + ", Edges: " + (long) NODES * EDGES_PER_NODE
+                + ", Sources/trial: " + SOURCES + ", Trials: " + TRIALS);
+        System.out.println();
+
+        Graph g = randomGraph(NODES, EDGES_PER_NODE, new Random(SEED));
+
+        bench("BinaryHeapPQ + lazy deletion", g, DijkstraBenchmark::lazy);
+        bench("IndexedHeapPQ + decreaseKey", g, DijkstraBenchmark::indexed);
+    }
+
+    // -----------------------------
+    // BENCHMARK
+    // -----------------------------
+    private static void bench(String label, Graph g, ShortestPaths sp) throws Exception {
+        int[] dist = new int[g.n];
+        long[] peak = new long[1];
+
+        // warmup
+        for (int s = 0; s < SOURCES; s++) sp.run(g, s, dist, peak);
+
+        long[] times = new long[TRIALS];
+        long checksum = 0;
+        for (int t = 0; t < TRIALS; t++) {
+            long sum = 0;
+            long start = System.nanoTime();
+            for (int s = 0; s < SOURCES; s++) {
+                sp.run(g, s, dist, peak);
+                for (int d : dist) if (d != Integer.MAX_VALUE) sum += d;
+            }
+            times[t] = System.nanoTime() - start;
+            checksum = sum;
+        }
+        Arrays.sort(times);
+
+        System.out.printf("  %-32s  median: %8.2f ms/source   peak queue size: %9d   checksum: %d%n",
+                label, times[TRIALS / 2] / 1e6 / SOURCES, peak[0], checksum);
+    }
+
+    // Stale queue entries are left in place and skipped when they surface.
+    private static void lazy(Graph g, int src, int[] dist, long[] peak) throws Exception {
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        boolean[] done = new boolean[g.n];
+        BinaryHeapPriorityQueue<Integer> pq = new BinaryHeapPriorityQueue<>();
+
+        dist[src] = 0;
+        pq.enqueue(0, src);
+        while (!pq.isEmpty()) {
+            peak[0] = Math.max(peak[0], pq.size());
+            int u = pq.dequeue();
+            if (done[u]) continue;
+            done[u] = true;
+
+            for (int e = g.offset[u]; e < g.offset[u + 1]; e++) {
+                int v = g.target[e];
+                int nd = dist[u] + g.weight[e];
+                if (nd < dist[v]) {
+                    dist[v] = nd;
+                    pq.enqueue(nd, v);
+                }
+            }
+        }
+    }
+
+    // Each node has at most one queue entry, updated in place.
+    private static void indexed(Graph g, int src, int[] dist, long[] peak) throws Exception {
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        int[] handle = new int[g.n];
+        Arrays.fill(handle, -1);
+        IndexedHeapPriorityQueue<Integer> pq = new IndexedHeapPriorityQueue<>();
+
+        dist[src] = 0;
+        handle[src] = pq.insert(0, src);
+        while (!pq.isEmpty()) {
+            peak[0] = Math.max(peak[0], pq.size());
+            int u = pq.dequeue();
+            handle[u] = -1;
+
+            for (int e = g.offset[u]; e < g.offset[u + 1]; e++) {
+                int v = g.target[e];
+                int nd = dist[u] + g.weight[e];
+                if (nd < dist[v]) {
+                    dist[v] = nd;
+                    if (handle[v] >= 0) pq.decreaseKey(handle[v], nd);
+                    else handle[v] = pq.insert(nd, v);
+                }
+            }
+        }
+    }
+
+    // -----------------------------
+    // GRAPH
+    // -----------------------------
+
+    // Directed graph in compressed sparse row form.
+    private static class Graph {
+        final int n;
+        final int[] offset;
+        final int[] target;
+        final int[] weight;
+
+        Graph(int n, int[] offset, int[] target, int[] weight) {
+            this.n = n;
+            this.offset = offset;
+            this.target = target;
+            this.weight = weight;
+        }
+    }
+
+    private static Graph randomGraph(int n, int degree, Random rng) {
+        int m = n * degree;
+        int[] offset = new int[n + 1];
+        int[] target = new int[m];
+        int[] weight = new int[m];
+        for (int u = 0; u < n; u++) {
+            offset[u] = u * degree;
+            for (int k = 0; k < degree; k++) {
+                target[u * degree + k] = rng.nextInt(n);
+                weight[u * degree + k] = 1 + rng.nextInt(MAX_WEIGHT);
+            }
+        }
+        offset[n] = m;
+        return new Graph(n, offset, target, weight);
+    }
+
+    // -----------------------------
+    // SMALL TYPES
+    // -----------------------------
+    private interface ShortestPaths {
+        void run(Graph g, int src, int[] dist, long[] peak) throws Exception;
+    }
+}
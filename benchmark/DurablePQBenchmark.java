@@ -0,0 +1,167 @@
+package benchmark;
+
+import chapter9.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CyclicBarrier;
+import java.util.stream.Stream;
+
+public class DurablePQBenchmark {
+
+    // -----------------------------
+    // CONFIG
+    // -----------------------------
+    private static final int FAST_OPS = 2_000_000;   // INTERVAL / NONE
+    private static final int SYNC_OPS = 20_000;      // EVERY_OP / GROUP, one fsync per group
+    private static final int[] THREADS = {1, 8, 64};
+    private static final int[] LOG_LENGTHS = {100_000, 1_000_000};
+    private static final int TRIALS = 3;
+    private static final long SEED = 315_351_107L;
+
+    public static void main(String[] args) throws Exception {
+        Path root = Files.createTempDirectory("durable-pq");
+        System.out.println("Durable PriorityQueue Benchmark (60% enqueue / 40% dequeue, Integer payloads).");
+        System.out.println("Dir: " + root + ", Trials: " + TRIALS);
+        System.out.println();
+
+        sanity(root.resolve("sanity"));
+
+        System.out.println("Amortized cost per operation:");
+        for (DurablePriorityQueue.SyncPolicy policy : DurablePriorityQueue.SyncPolicy.values()) {
+            boolean syncing = policy == DurablePriorityQueue.SyncPolicy.EVERY_OP
+                    || policy == DurablePriorityQueue.SyncPolicy.GROUP;
+            int ops = syncing ? SYNC_OPS : FAST_OPS;
+            for (int threads : THREADS) {
+                bench(root.resolve(policy + "-" + threads), policy, threads, ops / threads);
+            }
+        }
+        System.out.println();
+
+        System.out.println("Recovery time after a clean close:");
+        for (int length : LOG_LENGTHS) {
+            recovery(root.resolve("recover-log-" + length), length, Long.MAX_VALUE, "log only");
+            recovery(root.resolve("recover-snap-" + length), length, length - 1_000, "snapshot + 1000-record log");
+        }
+        deleteTree(root);
+    }
+
+    // -----------------------------
+    // SANITY
+    // -----------------------------
+    // A payload the codec rejects must not leave a partial record in the log.
+    private static void sanity(Path dir) throws Exception {
+        deleteTree(dir);
+        try (DurablePriorityQueue<Integer> pq = new DurablePriorityQueue<>(dir, ExternalPriorityQueue.Codec.INTEGER,
+                DurablePriorityQueue.SyncPolicy.EVERY_OP)) {
+            try {
+                pq.enqueue(1, null);
+                throw new RuntimeException("Sanity failed: null payload was encoded");
+            } catch (NullPointerException expected) {
+                // rejected by Codec.INTEGER
+            }
+            pq.enqueue(2, 5);
+        }
+        try (DurablePriorityQueue<Integer> pq = new DurablePriorityQueue<>(dir, ExternalPriorityQueue.Codec.INTEGER,
+                DurablePriorityQueue.SyncPolicy.EVERY_OP)) {
+            if (pq.size() != 1 || pq.dequeue() != 5) {
+                throw new RuntimeException("Sanity failed: log after a failed encode did not recover");
+            }
+        }
+        deleteTree(dir);
+    }
+
+    // -----------------------------
+    // BENCHMARK
+    // -----------------------------
+    private static void bench(Path dir, DurablePriorityQueue.SyncPolicy policy, int threads, int opsPerThread)
+            throws Exception {
+        long[] times = new long[TRIALS];
+        long syncs = 0;
+        for (int t = 0; t < TRIALS; t++) {
+            deleteTree(dir);
+            try (DurablePriorityQueue<Integer> pq = new DurablePriorityQueue<>(dir,
+                    ExternalPriorityQueue.Codec.INTEGER, policy)) {
+                times[t] = run(pq, threads, opsPerThread);
+                syncs = pq.syncCount();
+            }
+        }
+        Arrays.sort(times);
+        long ops = (long) threads * opsPerThread;
+        System.out.printf("  %-9s threads=%-3d  median: %10.1f ns/op   fsyncs: %d%n",
+                policy, threads, (double) times[TRIALS / 2] / ops, syncs);
+        deleteTree(dir);
+    }
+
+    // Wall time from releasing the workers until the last one finishes.
+    private static long run(DurablePriorityQueue<Integer> pq, int threads, int opsPerThread) throws Exception {
+        SplittableRandom seedRng = new SplittableRandom(SEED);
+        CyclicBarrier start = new CyclicBarrier(threads + 1);
+        Thread[] workers = new Thread[threads];
+        for (int w = 0; w < threads; w++) {
+            SplittableRandom rng = seedRng.split();
+            workers[w] = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < opsPerThread; i++) {
+                        if (rng.nextInt(100) < 60) {
+                            pq.enqueue(rng.nextInt(10_000), i);
+                        } else {
+                            try {
+                                pq.dequeue();
+                            } catch (Exception empty) {
+                                // another thread drained it first
+                            }
+                        }
+                    }
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+            workers[w].start();
+        }
+        start.await();
+        long begin = System.nanoTime();
+        for (Thread w : workers) w.join();
+        return System.nanoTime() - begin;
+    }
+
+    private static void recovery(Path dir, int records, long snapshotEvery, String label) throws Exception {
+        deleteTree(dir);
+        SplittableRandom rng = new SplittableRandom(SEED);
+        int size;
+        try (DurablePriorityQueue<Integer> pq = new DurablePriorityQueue<>(dir, ExternalPriorityQueue.Codec.INTEGER,
+                DurablePriorityQueue.SyncPolicy.NONE, 10, snapshotEvery)) {
+            for (int i = 0; i < records; i++) {
+                if (rng.nextInt(100) < 60 || pq.isEmpty()) pq.enqueue(rng.nextInt(10_000), i);
+                else pq.dequeue();
+            }
+            size = pq.size();
+        }
+
+        long[] times = new long[TRIALS];
+        long replayed = 0;
+        for (int t = 0; t < TRIALS; t++) {
+            try (DurablePriorityQueue<Integer> pq = new DurablePriorityQueue<>(dir,
+                    ExternalPriorityQueue.Codec.INTEGER, DurablePriorityQueue.SyncPolicy.NONE, 10, snapshotEvery)) {
+                if (pq.size() != size) throw new RuntimeException("recovered " + pq.size() + " of " + size);
+                times[t] = pq.recoveryNanos();
+                replayed = pq.recoveredRecords();
+            }
+        }
+        Arrays.sort(times);
+        System.out.printf("  %9d records, %-28s  median: %8.2f ms   replayed: %d   queue size: %d%n",
+                records, label, times[TRIALS / 2] / 1e6, replayed, size);
+        deleteTree(dir);
+    }
+
+    private static void deleteTree(Path dir) throws Exception {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) Files.delete(p);
+        }
+        Files.delete(dir);
+    }
+}
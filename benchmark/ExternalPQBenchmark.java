@@ -0,0 +1,106 @@
+package benchmark;
+
+import chapter9.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+public class ExternalPQBenchmark {
+
+    // -----------------------------
+    // CONFIG
+    // -----------------------------
+    private static final long[] DEFAULT_SIZES = {1_000_000L, 10_000_000L};
+    private static final int BUFFER_CAPACITY = 1 << 20;   // elements held in memory
+    private static final long IN_MEMORY_LIMIT = 10_000_000L; // largest size also run on BinaryHeapPQ
+    private static final int TRIALS = 3;
+    private static final long SEED = 315_351_107L;
+
+    // Sizes can be given on the command line, e.g. 100000000 1000000000.
+    public static void main(String[] args) throws Exception {
+        long[] sizes = args.length == 0 ? DEFAULT_SIZES : Arrays.stream(args).mapToLong(Long::parseLong).toArray();
+        Path dir = Files.createTempDirectory("external-pq");
+
+        System.out.println("External PriorityQueue Benchmark (enqueue n random priorities, then drain).");
+        System.out.println("Buffer: " + BUFFER_CAPACITY + " elements, Run dir: " + dir + ", Trials: " + TRIALS);
+        System.out.println();
+
+        for (long n : sizes) {
+            System.out.println("n = " + n);
+            // one trial is plenty once a run takes minutes
+            int trials = n > IN_MEMORY_LIMIT ? 1 : TRIALS;
+            bench("ExternalPQ", n, trials, () -> new ExternalPriorityQueue<>(dir, BUFFER_CAPACITY,
+                    ExternalPriorityQueue.Codec.LONG));
+            if (n <= IN_MEMORY_LIMIT) {
+                bench("BinaryHeapPQ (in memory)", n, trials, BinaryHeapPriorityQueue::new);
+            }
+            System.out.println();
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    // -----------------------------
+    // BENCHMARK
+    // -----------------------------
+    private static void bench(String label, long n, int trials, Factory factory) throws Exception {
+        long[] enq = new long[trials];
+        long[] deq = new long[trials];
+        Result last = null;
+        for (int t = 0; t < trials; t++) {
+            last = run(factory.create(), n);
+            enq[t] = last.enqueueNanos;
+            deq[t] = last.dequeueNanos;
+        }
+        Arrays.sort(enq);
+        Arrays.sort(deq);
+        System.out.printf("  %-26s  enqueue: %7.1f ns/op   dequeue: %7.1f ns/op   checksum: %d%s%n",
+                label, (double) enq[trials / 2] / n, (double) deq[trials / 2] / n, last.checksum, last.note);
+    }
+
+    private static Result run(PriorityQueue<Long> pq, long n) throws Exception {
+        SplittableRandom rng = new SplittableRandom(SEED);
+
+        long start = System.nanoTime();
+        for (long i = 0; i < n; i++) {
+            int priority = rng.nextInt(Integer.MAX_VALUE);
+            pq.enqueue(priority, (long) priority);
+        }
+        long mid = System.nanoTime();
+
+        // position * priority depends on the order but not on how ties were broken
+        long sum = 0;
+        for (long i = 0; i < n; i++) {
+            sum += i * pq.dequeue();
+        }
+        long end = System.nanoTime();
+
+        String note = "";
+        if (pq instanceof ExternalPriorityQueue<Long> ext) {
+            note = "   spilled: " + ext.spilledRecords() + ", compactions: " + ext.compactions();
+            ext.close();
+        }
+        return new Result(mid - start, end - mid, sum, note);
+    }
+
+    // -----------------------------
+    // SMALL TYPES
+    // -----------------------------
+    private interface Factory {
+        PriorityQueue<Long> create() throws Exception;
+    }
+
+    private static class Result {
+        final long enqueueNanos;
+        final long dequeueNanos;
+        final long checksum;
+        final String note;
+        Result(long enqueueNanos, long dequeueNanos, long checksum, String note) {
+            this.enqueueNanos = enqueueNanos;
+            this.dequeueNanos = dequeueNanos;
+            this.checksum = checksum;
+            this.note = note;
+        }
+    }
+}
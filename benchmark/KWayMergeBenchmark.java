@@ -0,0 +1,190 @@
+package benchmark;
+
+import chapter9.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+public class KWayMergeBenchmark {
+
+    // -----------------------------
+    // CONFIG
+    // -----------------------------
+    private static final int TOTAL = 1 << 22;   // elements merged per run, split evenly over k sources
+    private static final int MIN_K = 2;
+    private static final int MAX_K = 4096;
+    private static final int TRIALS = 5;
+    private static final long SEED = 315_351_107L;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("kway-merge");
+        System.out.println("K-way Merge Benchmark (" + TOTAL + " random ints split into k sorted sources).");
+        System.out.println("Trials: " + TRIALS + ", Files: " + dir);
+        System.out.println();
+
+        System.out.printf("%-6s %14s %14s %14s %14s %14s%n", "k", "LoserTree int", "LoserTree mmap",
+                "LoserTree gen", "BinaryHeapPQ", "IntKeyHeapPQ");
+        for (int k = MIN_K; k <= MAX_K; k *= 2) {
+            int[][] runs = makeRuns(k);
+            Path[] files = writeRuns(dir, runs);
+            List<List<Integer>> boxed = box(runs);
+
+            Result tree = bench(() -> mergeInts(runs));
+            Result mapped = bench(() -> mergeMapped(files));
+            Result generic = bench(() -> mergeGeneric(boxed));
+            Result binary = bench(() -> mergeWithQueue(new BinaryHeapPriorityQueue<>(), runs));
+            Result intKey = bench(() -> mergeWithQueue(new IntKeyHeapPriorityQueue<>(), runs));
+
+            for (Result r : new Result[]{mapped, generic, binary, intKey}) {
+                if (r.checksum != tree.checksum) throw new IllegalStateException("checksum mismatch at k=" + k);
+            }
+            System.out.printf("%-6d %11.2f ns %11.2f ns %11.2f ns %11.2f ns %11.2f ns%n", k,
+                    tree.perElement(), mapped.perElement(), generic.perElement(),
+                    binary.perElement(), intKey.perElement());
+            deleteTree(dir);
+            Files.createDirectories(dir);
+        }
+        deleteTree(dir);
+    }
+
+    // -----------------------------
+    // BENCHMARK
+    // -----------------------------
+    private static Result bench(MergeRun run) throws Exception {
+        // warmup
+        run.merge();
+
+        long[] times = new long[TRIALS];
+        long checksum = 0;
+        for (int t = 0; t < TRIALS; t++) {
+            long start = System.nanoTime();
+            checksum = run.merge();
+            times[t] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return new Result(times[TRIALS / 2], checksum);
+    }
+
+    private static long mergeInts(int[][] runs) {
+        KWayMerger.IntSource[] sources = new KWayMerger.IntSource[runs.length];
+        for (int i = 0; i < runs.length; i++) sources[i] = KWayMerger.IntSource.of(runs[i]);
+        KWayMerger.IntMerger m = new KWayMerger.IntMerger(sources, false);
+        long sum = 0;
+        for (long i = 0; m.hasNext(); i++) sum += i * m.nextInt();
+        return sum;
+    }
+
+    private static long mergeMapped(Path[] files) throws Exception {
+        KWayMerger.IntSource[] sources = new KWayMerger.IntSource[files.length];
+        for (int i = 0; i < files.length; i++) sources[i] = KWayMerger.IntSource.mapped(files[i]);
+        KWayMerger.IntMerger m = new KWayMerger.IntMerger(sources, false);
+        long sum = 0;
+        for (long i = 0; m.hasNext(); i++) sum += i * m.nextInt();
+        return sum;
+    }
+
+    private static long mergeGeneric(List<List<Integer>> runs) {
+        List<Iterator<Integer>> sources = new ArrayList<>();
+        for (List<Integer> run : runs) sources.add(run.iterator());
+        KWayMerger<Integer> m = KWayMerger.naturalOrder(sources, false);
+        long sum = 0;
+        for (long i = 0; m.hasNext(); i++) sum += i * m.next();
+        return sum;
+    }
+
+    // The textbook merge: the queue holds one (head value, source) entry per
+    // source; pop the smallest, emit it, push that source's next value.
+    private static long mergeWithQueue(PriorityQueue<Integer> pq, int[][] runs) throws Exception {
+        int[] pos = new int[runs.length];
+        for (int s = 0; s < runs.length; s++) {
+            if (runs[s].length > 0) {
+                pq.enqueue(runs[s][0], s);
+                pos[s] = 1;
+            }
+        }
+        long sum = 0;
+        long i = 0;
+        while (!pq.isEmpty()) {
+            int s = pq.dequeue();
+            int v = runs[s][pos[s] - 1];
+            sum += i++ * v;
+            if (pos[s] < runs[s].length) {
+                pq.enqueue(runs[s][pos[s]++], s);
+            }
+        }
+        return sum;
+    }
+
+    // -----------------------------
+    // DATA
+    // -----------------------------
+    private static int[][] makeRuns(int k) {
+        SplittableRandom rng = new SplittableRandom(SEED);
+        int[][] runs = new int[k][];
+        for (int s = 0; s < k; s++) {
+            // spread the remainder so lengths differ by at most one
+            int n = TOTAL / k + (s < TOTAL % k ? 1 : 0);
+            runs[s] = new int[n];
+            for (int i = 0; i < n; i++) runs[s][i] = rng.nextInt();
+            Arrays.sort(runs[s]);
+        }
+        return runs;
+    }
+
+    private static Path[] writeRuns(Path dir, int[][] runs) throws Exception {
+        Path[] files = new Path[runs.length];
+        for (int s = 0; s < runs.length; s++) {
+            files[s] = dir.resolve("run-" + s + ".bin");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(files[s]), 1 << 16))) {
+                for (int v : runs[s]) out.writeInt(v);
+            }
+        }
+        return files;
+    }
+
+    private static List<List<Integer>> box(int[][] runs) {
+        List<List<Integer>> out = new ArrayList<>();
+        for (int[] run : runs) {
+            List<Integer> list = new ArrayList<>(run.length);
+            for (int v : run) list.add(v);
+            out.add(list);
+        }
+        return out;
+    }
+
+    private static void deleteTree(Path dir) throws Exception {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) Files.delete(p);
+        }
+        Files.delete(dir);
+    }
+
+    // -----------------------------
+    // SMALL TYPES
+    // -----------------------------
+    private interface MergeRun {
+        long merge() throws Exception;
+    }
+
+    private static class Result {
+        final long nanos;
+        final long checksum;
+        Result(long nanos, long checksum) {
+            this.nanos = nanos;
+            this.checksum = checksum;
+        }
+        double perElement() {
+            return (double) nanos / TOTAL;
+        }
+    }
+}
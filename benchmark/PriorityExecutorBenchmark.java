@@ -0,0 +1,162 @@
+package benchmark;
+
+import chapter9.*;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class PriorityExecutorBenchmark {
+
+    // -----------------------------
+    // CONFIG
+    // -----------------------------
+    private static final int[] WORKERS = {1, 4, 16};
+    private static final int TASKS = 500_000;       // empty tasks, so the time is all dispatch
+    private static final int DELAY_TASKS = 4_000;   // sleeping tasks, for the delay report
+    private static final int DELAY_WORKERS = 4;
+    private static final long TASK_SLEEP_NANOS = 200_000;
+    private static final int PRIORITIES = 8;
+    private static final int TRIALS = 5;
+    private static final long SEED = 315_351_107L;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Priority Executor Benchmark (one producer, " + PRIORITIES + " random priorities).");
+        System.out.println("Tasks: " + TASKS + ", Trials: " + TRIALS);
+        System.out.println();
+
+        System.out.println("Dispatch overhead per empty task, submit to completion:");
+        for (int workers : WORKERS) {
+            bench("PriorityExecutor (BinaryHeapPQ)", workers,
+                    () -> new PriorityExecutor(workers));
+            bench("PriorityExecutor (PairingHeapPQ)", workers,
+                    () -> new PriorityExecutor(workers, new PairingHeapPriorityQueue<>(), 0));
+            bench("PriorityExecutor (aging 1 ms)", workers,
+                    () -> new PriorityExecutor(workers, new BinaryHeapPriorityQueue<>(), 1_000_000));
+            bench("ThreadPoolExecutor + PBQ", workers, () -> new ComparableTaskPool(workers));
+            System.out.println();
+        }
+
+        System.out.println("Queueing delay by priority, " + DELAY_WORKERS + " workers, " + DELAY_TASKS
+                + " tasks sleeping " + TASK_SLEEP_NANOS / 1_000 + " us, submitted in one burst:");
+        delays("no aging", new PriorityExecutor(DELAY_WORKERS), false);
+        delays("aging 1 ms", new PriorityExecutor(DELAY_WORKERS, new BinaryHeapPriorityQueue<>(), 1_000_000), false);
+        delays("no aging, priority 0 capped at 1", new PriorityExecutor(DELAY_WORKERS), true);
+    }
+
+    // -----------------------------
+    // BENCHMARK
+    // -----------------------------
+    private static void bench(String label, int workers, Factory factory) throws Exception {
+        // warmup
+        run(factory.create(), TASKS / 10);
+
+        long[] times = new long[TRIALS];
+        for (int t = 0; t < TRIALS; t++) {
+            times[t] = run(factory.create(), TASKS);
+        }
+        Arrays.sort(times);
+        System.out.printf("  %-34s workers=%-3d  median: %8.1f ns/task%n",
+                label, workers, (double) times[TRIALS / 2] / TASKS);
+    }
+
+    private static long run(ExecutorService ex, int tasks) throws Exception {
+        SplittableRandom rng = new SplittableRandom(SEED);
+        CountDownLatch done = new CountDownLatch(tasks);
+        Runnable task = done::countDown;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < tasks; i++) {
+            submit(ex, rng.nextInt(PRIORITIES), task);
+        }
+        done.await();
+        long end = System.nanoTime();
+
+        ex.shutdown();
+        ex.awaitTermination(10, TimeUnit.SECONDS);
+        return end - start;
+    }
+
+    // Every worker is held on a gate while the burst is queued, so the delays
+    // come from the executor's ordering rather than from the submit loop.
+    private static void delays(String label, PriorityExecutor ex, boolean capTop) throws Exception {
+        if (capTop) ex.setConcurrencyLimit(0, 1);
+        CountDownLatch gate = new CountDownLatch(1);
+        for (int w = 0; w < DELAY_WORKERS; w++) {
+            ex.submit(-1, () -> {
+                gate.await();
+                return null;
+            });
+        }
+
+        SplittableRandom rng = new SplittableRandom(SEED);
+        CountDownLatch done = new CountDownLatch(DELAY_TASKS);
+        Runnable task = () -> {
+            try {
+                Thread.sleep(Duration.ofNanos(TASK_SLEEP_NANOS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        };
+        for (int i = 0; i < DELAY_TASKS; i++) {
+            ex.submit(rng.nextInt(PRIORITIES), task);
+        }
+        gate.countDown();
+        done.await();
+        ex.shutdown();
+        ex.awaitTermination(10, TimeUnit.SECONDS);
+
+        System.out.println("  " + label + " (set aside by cap: " + ex.deferredByCapCount() + ")");
+        for (PriorityExecutor.DelayStats s : ex.queueDelays()) {
+            if (s.priority() < 0) continue; // the gate tasks
+            System.out.printf("    priority %d  tasks: %6d   mean: %8.2f ms   p50: %8.2f ms   p99: %8.2f ms   max: %8.2f ms%n",
+                    s.priority(), s.tasks(), s.meanNanos() / 1e6, s.p50Nanos() / 1e6,
+                    s.p99Nanos() / 1e6, s.maxNanos() / 1e6);
+        }
+    }
+
+    private static void submit(ExecutorService ex, int priority, Runnable task) {
+        if (ex instanceof PriorityExecutor pe) {
+            pe.submit(priority, task);
+        } else {
+            ex.execute(new ComparableTask(priority, task));
+        }
+    }
+
+    // -----------------------------
+    // SMALL TYPES
+    // -----------------------------
+    private interface Factory {
+        ExecutorService create();
+    }
+
+    // The usual way to get priorities out of a ThreadPoolExecutor: fixed
+    // platform threads draining a PriorityBlockingQueue of comparable tasks.
+    private static class ComparableTaskPool extends ThreadPoolExecutor {
+        ComparableTaskPool(int workers) {
+            super(workers, workers, 0, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<>());
+            prestartAllCoreThreads();
+        }
+    }
+
+    private static class ComparableTask extends FutureTask<Void> implements Comparable<ComparableTask> {
+        final int priority;
+
+        ComparableTask(int priority, Runnable task) {
+            super(task, null);
+            this.priority = priority;
+        }
+
+        @Override
+        public int compareTo(ComparableTask other) {
+            return Integer.compare(priority, other.priority);
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package benchmark;
+
+import chapter9.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.IntFunction;
+
+public class ProducerConsumerBenchmark {
+
+    // -----------------------------
+    // CONFIG
+    // -----------------------------
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+    private static final long WARMUP_MS = 200;
+    private static final long DURATION_MS = 500;
+    private static final int CAPACITY = 1 << 12;     // producers back off above this many elements
+    private static final int SIZE_CHECK_EVERY = 256; // puts between capacity checks
+    private static final int TRIALS = 3;
+    private static final long SEED = 315_351_107L;
+
+    // Arguments (all optional):
+    //   --virtual           run producers and consumers as virtual threads
+    //   --both              run the curves on platform threads, then on virtual threads
+    //   --producers P --consumers C
+    //                       one configuration instead of the 1..64 curve
+    //   --duration MS       measured time per trial
+    public static void main(String[] args) throws Exception {
+        boolean platform = true;
+        boolean virtual = false;
+        int producers = -1;
+        int consumers = -1;
+        long duration = DURATION_MS;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--virtual" -> { platform = false; virtual = true; }
+                case "--both" -> virtual = true;
+                case "--producers" -> producers = Integer.parseInt(args[++i]);
+                case "--consumers" -> consumers = Integer.parseInt(args[++i]);
+                case "--duration" -> duration = Long.parseLong(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+        if ((producers < 0) != (consumers < 0)) {
+            throw new IllegalArgumentException("--producers and --consumers go together");
+        }
+
+        ArrayList<Config> configs = new ArrayList<>();
+        if (producers >= 0) {
+            if (producers + consumers == 0) throw new IllegalArgumentException("no threads");
+            configs.add(new Config(producers, consumers));
+        } else {
+            for (int t : THREADS) {
+                // a single thread alternates between producing and consuming
+                configs.add(t == 1 ? new Config(0, 0) : new Config(t / 2, t - t / 2));
+            }
+        }
+
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<IntFunction<Channel>> impls = new ArrayList<>();
+        names.add("SyncQueue(ArrayListQueue)");
+        impls.add(t -> Channel.of(new SynchronizedQueue<>(new ArrayListQueue<>())));
+        names.add("SyncQueue(DLinkedListQueue)");
+        impls.add(t -> Channel.of(new SynchronizedQueue<>(new DLinkedListQueue<>())));
+        names.add("ConcurrentLinkedQueue");
+        impls.add(t -> Channel.of(new ConcurrentQueueAdapter<>()));
+        names.add("SyncStack(ArrayListStack)");
+        impls.add(t -> Channel.of(new SynchronizedStack<>(new ArrayListStack<>())));
+        names.add("SyncStack(DLinkedListStack)");
+        impls.add(t -> Channel.of(new SynchronizedStack<>(new DLinkedListStack<>())));
+        names.add("ConcurrentLinkedDeque stack");
+        impls.add(t -> Channel.of(new ConcurrentStackAdapter<>()));
+        names.add("SyncPQ(BinaryHeapPQ)");
+        impls.add(t -> Channel.of(new SynchronizedPriorityQueue<>(new BinaryHeapPriorityQueue<>())));
+        names.add("FlatCombiningPQ");
+        impls.add(t -> Channel.of(new FlatCombiningPriorityQueue<>()));
+        names.add("MultiQueuePQ (c=2)");
+        impls.add(t -> Channel.of(new MultiQueuePriorityQueue<>(t, 2)));
+        names.add("PriorityBlockingQueue");
+        impls.add(t -> Channel.of(new ConcurrentPQBenchmark.BlockingQueueAdapter<>()));
+
+        System.out.println("Producer/Consumer Scaling Benchmark (half the threads produce, half consume).");
+        System.out.println("Warmup: " + WARMUP_MS + " ms, Measured: " + duration + " ms, Capacity: " + CAPACITY
+                + ", Trials: " + TRIALS);
+        System.out.println();
+
+        if (platform) curves("platform threads", false, configs, names, impls, duration);
+        if (virtual) curves("virtual threads", true, configs, names, impls, duration);
+    }
+
+    // -----------------------------
+    // BENCHMARK
+    // -----------------------------
+    private static void curves(String model, boolean virtual, ArrayList<Config> configs, ArrayList<String> names,
+                               ArrayList<IntFunction<Channel>> impls, long duration) throws Exception {
+        System.out.println("== " + model + " ==");
+        System.out.printf("%-30s", "producers/consumers");
+        for (Config c : configs) System.out.printf("%10s", c);
+        System.out.println("   (Mops/s, median; slowest/fastest thread in brackets)");
+
+        for (int i = 0; i < impls.size(); i++) {
+            Run[] row = new Run[configs.size()];
+            System.out.printf("%-30s", names.get(i));
+            for (int c = 0; c < row.length; c++) {
+                row[c] = bench(impls.get(i), configs.get(c), virtual, duration);
+                System.out.printf("%10s", String.format("%.2f", row[c].mops()));
+            }
+            System.out.println();
+            System.out.printf("%-30s", "");
+            for (Run r : row) System.out.printf("%10s", String.format("[%.2f]", r.fairness()));
+            System.out.println();
+        }
+        System.out.println();
+    }
+
+    private static Run bench(IntFunction<Channel> factory, Config config, boolean virtual, long duration)
+            throws Exception {
+        Run[] runs = new Run[TRIALS];
+        for (int t = 0; t < TRIALS; t++) {
+            runs[t] = run(factory.apply(config.threads()), config, virtual, duration);
+        }
+        Arrays.sort(runs, (a, b) -> Double.compare(a.mops(), b.mops()));
+        return runs[TRIALS / 2];
+    }
+
+    // All workers start together off a barrier, run WARMUP_MS uncounted, then
+    // count successful operations until the stop flag is raised.
+    private static Run run(Channel ch, Config config, boolean virtual, long duration) throws Exception {
+        SplittableRandom seedRng = new SplittableRandom(SEED);
+        for (int i = 0; i < CAPACITY / 2; i++) ch.put(i & 127, seedRng);
+
+        int threads = config.threads();
+        Control ctl = new Control(threads + 1);
+        Worker[] workers = new Worker[threads];
+        Thread[] running = new Thread[threads];
+        for (int w = 0; w < threads; w++) {
+            Role role = config.producers() == 0 ? Role.BOTH : w < config.producers() ? Role.PRODUCER : Role.CONSUMER;
+            workers[w] = new Worker(ch, role, ctl, seedRng.split());
+            running[w] = virtual ? Thread.ofVirtual().unstarted(workers[w]) : Thread.ofPlatform().unstarted(workers[w]);
+            running[w].start();
+        }
+
+        ctl.start.await();
+        Thread.sleep(WARMUP_MS);
+        long begin = System.nanoTime();
+        ctl.measuring = true;
+        Thread.sleep(duration);
+        ctl.stop = true;
+        long end = System.nanoTime();
+        for (Thread t : running) t.join();
+
+        long total = 0;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (Worker w : workers) {
+            total += w.ops;
+            min = Math.min(min, w.ops);
+            max = Math.max(max, w.ops);
+        }
+        return new Run(total, end - begin, max == 0 ? 0 : (double) min / max);
+    }
+
+    // -----------------------------
+    // SMALL TYPES
+    // -----------------------------
+    private enum Role { PRODUCER, CONSUMER, BOTH }
+
+    // p = c = 0 means one thread doing both
+    private record Config(int producers, int consumers) {
+        int threads() {
+            return Math.max(1, producers + consumers);
+        }
+
+        @Override
+        public String toString() {
+            return producers == 0 ? "1" : producers + "/" + consumers;
+        }
+    }
+
+    private record Run(long ops, long nanos, double fairness) {
+        double mops() {
+            return ops * 1_000.0 / nanos;
+        }
+    }
+
+    private static final class Control {
+        final CyclicBarrier start;
+        volatile boolean measuring;
+        volatile boolean stop;
+
+        Control(int parties) {
+            this.start = new CyclicBarrier(parties);
+        }
+    }
+
+    // Counts in locals and publishes them when it stops, so workers allocated
+    // side by side never share a cache line for their counters. Read after join().
+    private static final class Worker implements Runnable {
+        private final Channel ch;
+        private final Role role;
+        private final Control ctl;
+        private final SplittableRandom rng;
+        long ops;
+
+        Worker(Channel ch, Role role, Control ctl, SplittableRandom rng) {
+            this.ch = ch;
+            this.role = role;
+            this.ctl = ctl;
+            this.rng = rng;
+        }
+
+        @Override
+        public void run() {
+            try {
+                ctl.start.await();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            long puts = 0;
+            long ops = 0;
+            boolean full = false;
+            boolean produce = role != Role.CONSUMER;
+            while (!ctl.stop) {
+                boolean ok;
+                if (produce) {
+                    // size() is O(n) for the JDK linked queues, so check it only now and
+                    // then; once it reports full, check every put until it drains, which
+                    // caps the size at CAPACITY + producers * SIZE_CHECK_EVERY
+                    if ((full || ++puts % SIZE_CHECK_EVERY == 0) && (full = ch.size() >= CAPACITY)) {
+                        ok = false;
+                    } else {
+                        ch.put((int) puts & 127, rng);
+                        ok = true;
+                    }
+                } else {
+                    ok = ch.take();
+                }
+                if (role == Role.BOTH) produce = !produce;
+
+                if (ok) {
+                    if (ctl.measuring) ops++;
+                } else {
+                    // back off; this is also where a virtual thread gives up its carrier
+                    Thread.yield();
+                }
+            }
+            this.ops = ops;
+        }
+    }
+
+    // One shape for every structure, so the worker loop is the same for all.
+    // Values stay below 128 so boxing hits the Integer cache.
+    private interface Channel {
+        void put(int value, SplittableRandom rng);
+
+        boolean take();
+
+        int size();
+
+        static Channel of(Queue<Integer> q) {
+            return new Channel() {
+                public void put(int value, SplittableRandom rng) {
+                    q.enqueue(value);
+                }
+
+                public boolean take() {
+                    if (q.isEmpty()) return false;
+                    try {
+                        q.dequeue();
+                        return true;
+                    } catch (Exception empty) {
+                        return false; // another consumer got there first
+                    }
+                }
+
+                public int size() {
+                    return q.size();
+                }
+            };
+        }
+
+        static Channel of(Stack<Integer> s) {
+            return new Channel() {
+                public void put(int value, SplittableRandom rng) {
+                    s.push(value);
+                }
+
+                public boolean take() {
+                    if (s.isEmpty()) return false;
+                    try {
+                        s.pop();
+                        return true;
+                    } catch (Exception empty) {
+                        return false;
+                    }
+                }
+
+                public int size() {
+                    return s.size();
+                }
+            };
+        }
+
+        static Channel of(PriorityQueue<Integer> pq) {
+            return new Channel() {
+                public void put(int value, SplittableRandom rng) {
+                    pq.enqueue(rng.nextInt(10_000), value);
+                }
+
+                public boolean take() {
+                    if (pq.isEmpty()) return false;
+                    try {
+                        pq.dequeue();
+                        return true;
+                    } catch (Exception empty) {
+                        return false;
+                    }
+                }
+
+                public int size() {
+                    return pq.size();
+                }
+            };
+        }
+    }
+
+    // Presents java.util.concurrent.ConcurrentLinkedQueue through the chapter9 interface.
+    static class ConcurrentQueueAdapter<T> implements Queue<T> {
+
+        private final ConcurrentLinkedQueue<T> q = new ConcurrentLinkedQueue<>();
+
+        @Override
+        public void enqueue(T data) {
+            q.add(data);
+        }
+
+        @Override
+        public T dequeue() throws Exception {
+            T v = q.poll();
+            if (v == null) throw new Exception("Queue is empty");
+            return v;
+        }
+
+        @Override
+        public T front() throws Exception {
+            T v = q.peek();
+            if (v == null) throw new Exception("Queue is empty");
+            return v;
+        }
+
+        @Override
+        public int size() {
+            return q.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return q.isEmpty();
+        }
+    }
+
+    // Presents java.util.concurrent.ConcurrentLinkedDeque, used from one end,
+    // through the chapter9 Stack interface.
+    static class ConcurrentStackAdapter<T> implements Stack<T> {
+
+        private final ConcurrentLinkedDeque<T> d = new ConcurrentLinkedDeque<>();
+
+        @Override
+        public void push(T data) {
+            d.push(data);
+        }
+
+        @Override
+        public T pop() throws Exception {
+            T v = d.pollFirst();
+            if (v == null) throw new Exception("Stack is empty");
+            return v;
+        }
+
+        @Override
+        public T top() throws Exception {
+            T v = d.peekFirst();
+            if (v == null) throw new Exception("Stack is empty");
+            return v;
+        }
+
+        @Override
+        public int size() {
+            return d.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return d.isEmpty();
+        }
+    }
+}
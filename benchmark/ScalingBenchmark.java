@@ -0,0 +1,414 @@
+package benchmark;
+
+import chapter9.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+
+public class ScalingBenchmark {
+
+    // -----------------------------
+    // CONFIG
+    // -----------------------------
+    // resident sizes: two points per decade from 10^3 up to 10^MAX_EXPONENT
+    private static final int MIN_EXPONENT = 3;
+    private static final int MAX_EXPONENT = 7;
+
+    // per size point: chunks run for WARMUP_MS uncounted, then MEASURE_MS
+    // counted; POINT_CAP_MS bounds prefill plus both, and an implementation
+    // that hits it (or runs out of heap) is not tried at larger sizes
+    private static final long WARMUP_MS = 100;
+    private static final long MEASURE_MS = 300;
+    private static final long POINT_CAP_MS = 3_000;
+    private static final long CHUNK_NANOS = 1_000_000; // chunks double until they take this long
+    private static final int MIN_CHUNKS = 3;
+
+    // new priorities are the one just dequeued plus [0, RANGE), the classic
+    // hold model, so keys never go backwards and insert positions stay spread
+    private static final int RANGE = 100_000;
+    private static final long SEED = 315_351_107L;
+
+    // fitting
+    private static final int MIN_POINTS = 4;
+    // log-log slope bands. A pure log n only climbs at about 0.09 over
+    // 10^3..10^7 and falling out of cache adds up to 0.3 to any curve, so
+    // O(1) against O(log n) is a soft call; the bands are set so that only a
+    // jump to polynomial growth is certain to get flagged.
+    private static final double LOG_SLOPE = 0.1;
+    private static final double LINEAR_SLOPE = 0.6;
+    private static final double QUADRATIC_SLOPE = 1.5;
+
+    private static final String[] MODELS = {"O(1)", "O(log n)", "O(n)", "O(n log n)", "O(n^2)"};
+
+    // Arguments (all optional):
+    //   --max E       largest size 10^E instead of 10^MAX_EXPONENT
+    //   --cap MS      POINT_CAP_MS override
+    //   --out DIR     where the CSV and JSON go (default results/)
+    public static void main(String[] args) throws Exception {
+        int maxExponent = MAX_EXPONENT;
+        long capMs = POINT_CAP_MS;
+        Path out = Path.of("results");
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--max" -> maxExponent = Integer.parseInt(args[++i]);
+                case "--cap" -> capMs = Long.parseLong(args[++i]);
+                case "--out" -> out = Path.of(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        int[] sizes = new int[2 * (maxExponent - MIN_EXPONENT) + 1];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = (int) Math.round(Math.pow(10, MIN_EXPONENT + i / 2.0));
+        }
+
+        ArrayList<Impl> impls = new ArrayList<>();
+        impls.add(new Impl("ArrayListStack", "Stack", "O(1)", () -> stack(new ArrayListStack<>())));
+        impls.add(new Impl("DLinkedListStack", "Stack", "O(1)", () -> stack(new DLinkedListStack<>())));
+        impls.add(new Impl("ArrayStack", "Stack", "O(1)", () -> stack(new ArrayStack<>())));
+        impls.add(new Impl("ListStack", "Stack", "O(1)", () -> stack(new ListStack<>())));
+        impls.add(new Impl("ArrayListQueue", "Queue", "O(1)", () -> queue(new ArrayListQueue<>())));
+        impls.add(new Impl("DLinkedListQueue", "Queue", "O(1)", () -> queue(new DLinkedListQueue<>())));
+        impls.add(new Impl("ArrayQueue", "Queue", "O(1)", () -> queue(new ArrayQueue<>())));
+        impls.add(new Impl("SortedArrayListPQ", "PQ", "O(n)",
+                () -> pq(new SortedArrayListPriorityQueue<>())));
+        // has a skip-list index over its nodes, so inserts no longer walk the list
+        impls.add(new Impl("SortedDLinkedListPQ", "PQ", "O(log n)",
+                () -> pq(new SortedDLinkedListPriorityQueue<>())));
+        impls.add(new Impl("BinaryHeapPQ", "PQ", "O(log n)", () -> pq(new BinaryHeapPriorityQueue<>())));
+        impls.add(new Impl("IntKeyHeapPQ", "PQ", "O(log n)", () -> pq(new IntKeyHeapPriorityQueue<>())));
+        impls.add(new Impl("DaryHeapPQ d=4", "PQ", "O(log n)", () -> pq(new DaryHeapPriorityQueue<>(4))));
+        impls.add(new Impl("IndexedHeapPQ", "PQ", "O(log n)", () -> pq(new IndexedHeapPriorityQueue<>())));
+        impls.add(new Impl("MinMaxHeapPQ", "PQ", "O(log n)", () -> pq(new MinMaxHeapPriorityQueue<>())));
+        impls.add(new Impl("PairingHeapPQ", "PQ", "O(log n)", () -> pq(new PairingHeapPriorityQueue<>())));
+        impls.add(new Impl("FibonacciHeapPQ", "PQ", "O(log n)", () -> pq(new FibonacciHeapPriorityQueue<>())));
+        impls.add(new Impl("RadixHeapPQ", "PQ", "O(1)", () -> pq(new RadixHeapPriorityQueue<>(0))));
+        impls.add(new Impl("AdaptivePQ", "PQ", "O(log n)", () -> pq(new AdaptivePriorityQueue<>())));
+
+        System.out.println("Size-Scaling Benchmark (hold model: one remove + one insert per op at a fixed size).");
+        System.out.println("Sizes: " + Arrays.toString(sizes) + ", Point cap: " + capMs + " ms");
+        System.out.println();
+
+        System.out.printf("%-22s", "ns/op");
+        for (int n : sizes) System.out.printf("%10s", n);
+        System.out.println();
+        for (Impl impl : impls) {
+            sweep(impl, sizes, capMs * 1_000_000);
+        }
+        System.out.println();
+
+        System.out.printf("%-22s %-10s %-11s %7s %13s%n", "implementation", "contract", "fitted", "slope",
+                "contract err");
+        for (Impl impl : impls) {
+            fit(impl);
+            System.out.printf("%-22s %-10s %-11s %7s %13s%s%n", impl.name, impl.contract, impl.fitted,
+                    Double.isNaN(impl.slope) ? "-" : String.format("%.2f", impl.slope),
+                    Double.isNaN(impl.contractError) ? "-" : String.format("%.0f%%", 100 * impl.contractError),
+                    impl.flagged ? "   WORSE THAN CONTRACT" : "");
+        }
+
+        Files.createDirectories(out);
+        String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        Path csv = out.resolve("scaling-" + stamp + ".csv");
+        Path json = out.resolve("scaling-" + stamp + ".json");
+        Files.writeString(csv, csv(impls));
+        Files.writeString(json, json(impls));
+        System.out.println();
+        System.out.println("Wrote " + csv + " and " + json);
+    }
+
+    // -----------------------------
+    // SWEEP
+    // -----------------------------
+    private static long sink; // keeps the hold results live
+
+    private static void sweep(Impl impl, int[] sizes, long capNanos) throws Exception {
+        System.out.printf("%-22s", impl.name);
+        point(impl, sizes[0], capNanos); // JIT warmup, discarded
+        boolean stopped = false;
+        for (int n : sizes) {
+            if (stopped) {
+                System.out.printf("%10s", "-");
+                continue;
+            }
+            Point p = point(impl, n, capNanos);
+            impl.points.add(p);
+            System.out.printf("%10s", p.status.equals("ok") ? String.format("%.1f", p.nsPerOp) : p.status);
+            stopped = !p.status.equals("ok");
+        }
+        System.out.println();
+    }
+
+    // One size: prefill to n, then hold at n in chunks that double until they
+    // take CHUNK_NANOS. The point's cost is the median chunk after warmup.
+    private static Point point(Impl impl, int n, long capNanos) throws Exception {
+        System.gc();
+        SplittableRandom rng = new SplittableRandom(SEED);
+        long begin = System.nanoTime();
+        long deadline = begin + capNanos;
+        try {
+            Subject s = impl.factory.get();
+            for (int i = 0; i < n; i++) {
+                s.insert(rng);
+                if ((i & 1023) == 0 && System.nanoTime() > deadline) return new Point(n, Double.NaN, 0, "capped");
+            }
+
+            long warmupEnd = System.nanoTime() + WARMUP_MS * 1_000_000;
+            long measureEnd = warmupEnd + MEASURE_MS * 1_000_000;
+            ArrayList<Double> chunks = new ArrayList<>();
+            long ops = 0;
+            long checksum = 0;
+            int chunk = 16;
+            while (true) {
+                long start = System.nanoTime();
+                checksum += s.hold(chunk, rng);
+                long end = System.nanoTime();
+                if (start >= warmupEnd) {
+                    chunks.add((double) (end - start) / chunk);
+                    ops += chunk;
+                }
+                if (end - start < CHUNK_NANOS) chunk *= 2;
+                if (end >= measureEnd && chunks.size() >= MIN_CHUNKS) break;
+                if (end >= deadline) return new Point(n, Double.NaN, ops, "capped");
+            }
+            sink += checksum;
+
+            double[] costs = chunks.stream().mapToDouble(Double::doubleValue).sorted().toArray();
+            return new Point(n, costs[costs.length / 2], ops, "ok");
+        } catch (OutOfMemoryError e) {
+            return new Point(n, Double.NaN, 0, "oom");
+        }
+    }
+
+    // -----------------------------
+    // FIT
+    // -----------------------------
+    // Classifies by the slope of log cost against log n, which noise and
+    // cache effects move far less than they move a least-squares fit of each
+    // model. Within the linear band, n log n is chosen only when it fits at
+    // least twice as well as n, since the two differ by just 0.1 in slope
+    // here. Contract error is how far the declared model's own best fit
+    // (cost = a + b*g(n), relative rms) is from the points. An
+    // implementation is flagged when it lands in a worse class than its
+    // contract.
+    private static void fit(Impl impl) {
+        ArrayList<Point> ok = new ArrayList<>();
+        for (Point p : impl.points) {
+            if (p.status.equals("ok")) ok.add(p);
+        }
+        if (ok.size() < MIN_POINTS) {
+            impl.fitted = "too few";
+            return;
+        }
+
+        double[] n = new double[ok.size()];
+        double[] t = new double[ok.size()];
+        for (int i = 0; i < n.length; i++) {
+            n[i] = ok.get(i).n;
+            t[i] = ok.get(i).nsPerOp;
+        }
+        impl.slope = slope(n, t);
+
+        int best;
+        if (impl.slope < LOG_SLOPE) best = 0;
+        else if (impl.slope < LINEAR_SLOPE) best = 1;
+        else if (impl.slope < QUADRATIC_SLOPE) best = relativeError(3, n, t) * 2 < relativeError(2, n, t) ? 3 : 2;
+        else best = 4;
+
+        int contract = Arrays.asList(MODELS).indexOf(impl.contract);
+        impl.fitted = MODELS[best];
+        impl.contractError = relativeError(contract, n, t);
+        impl.flagged = best > contract;
+    }
+
+    private static double g(int model, double n) {
+        return switch (model) {
+            case 0 -> 0;
+            case 1 -> Math.log(n);
+            case 2 -> n;
+            case 3 -> n * Math.log(n);
+            default -> n * n;
+        };
+    }
+
+    // weighted least squares of t on g(n), slope held at 0 if it comes out negative
+    private static double relativeError(int model, double[] n, double[] t) {
+        double sw = 0, sg = 0, st = 0, sgg = 0, sgt = 0;
+        for (int i = 0; i < n.length; i++) {
+            double w = 1 / (t[i] * t[i]);
+            double x = g(model, n[i]);
+            sw += w;
+            sg += w * x;
+            st += w * t[i];
+            sgg += w * x * x;
+            sgt += w * x * t[i];
+        }
+        double det = sw * sgg - sg * sg;
+        double b = det > 0 ? (sw * sgt - sg * st) / det : 0;
+        if (b < 0) b = 0;
+        double a = (st - b * sg) / sw;
+
+        double sum = 0;
+        for (int i = 0; i < n.length; i++) {
+            double r = (t[i] - a - b * g(model, n[i])) / t[i];
+            sum += r * r;
+        }
+        return Math.sqrt(sum / n.length);
+    }
+
+    // least squares slope of log t against log n
+    private static double slope(double[] n, double[] t) {
+        double mx = 0, my = 0;
+        for (int i = 0; i < n.length; i++) {
+            mx += Math.log(n[i]) / n.length;
+            my += Math.log(t[i]) / n.length;
+        }
+        double sxy = 0, sxx = 0;
+        for (int i = 0; i < n.length; i++) {
+            double dx = Math.log(n[i]) - mx;
+            sxy += dx * (Math.log(t[i]) - my);
+            sxx += dx * dx;
+        }
+        return sxy / sxx;
+    }
+
+    // -----------------------------
+    // OUTPUT
+    // -----------------------------
+    // one row per size point, for plotting ns/op against n
+    private static String csv(ArrayList<Impl> impls) {
+        StringBuilder sb = new StringBuilder("implementation,adt,contract,fitted,flagged,n,ns_per_op,ops,status\n");
+        for (Impl impl : impls) {
+            for (Point p : impl.points) {
+                sb.append(String.format(Locale.ROOT, "%s,%s,%s,%s,%b,%d,%s,%d,%s%n", impl.name, impl.adt,
+                        impl.contract, impl.fitted, impl.flagged, p.n,
+                        Double.isNaN(p.nsPerOp) ? "" : String.format(Locale.ROOT, "%.3f", p.nsPerOp),
+                        p.ops, p.status));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String json(ArrayList<Impl> impls) {
+        StringBuilder sb = new StringBuilder("[\n");
+        for (int i = 0; i < impls.size(); i++) {
+            Impl impl = impls.get(i);
+            sb.append(String.format(Locale.ROOT,
+                    "  {\"implementation\": \"%s\", \"adt\": \"%s\", \"contract\": \"%s\", \"fitted\": \"%s\", "
+                            + "\"slope\": %s, \"contractError\": %s, \"flagged\": %b, \"points\": [",
+                    impl.name, impl.adt, impl.contract, impl.fitted, number(impl.slope),
+                    number(impl.contractError), impl.flagged));
+            for (int j = 0; j < impl.points.size(); j++) {
+                Point p = impl.points.get(j);
+                sb.append(String.format(Locale.ROOT, "%s{\"n\": %d, \"nsPerOp\": %s, \"ops\": %d, \"status\": \"%s\"}",
+                        j == 0 ? "" : ", ", p.n, number(p.nsPerOp), p.ops, p.status));
+            }
+            sb.append(i + 1 < impls.size() ? "]},\n" : "]}\n");
+        }
+        return sb.append("]\n").toString();
+    }
+
+    private static String number(double v) {
+        return Double.isNaN(v) ? "null" : String.format(Locale.ROOT, "%.4f", v);
+    }
+
+    // -----------------------------
+    // SUBJECTS
+    // -----------------------------
+    // Values stay below 128 so boxing hits the Integer cache; priority queue
+    // items are their priorities because the next key is built from the one
+    // just dequeued.
+    private static Subject stack(Stack<Integer> s) {
+        return new Subject() {
+            public void insert(SplittableRandom rng) {
+                s.push(rng.nextInt(128));
+            }
+
+            public long hold(int ops, SplittableRandom rng) throws Exception {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    s.push(i & 127);
+                    sum += s.pop();
+                }
+                return sum;
+            }
+        };
+    }
+
+    private static Subject queue(Queue<Integer> q) {
+        return new Subject() {
+            public void insert(SplittableRandom rng) {
+                q.enqueue(rng.nextInt(128));
+            }
+
+            public long hold(int ops, SplittableRandom rng) throws Exception {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    q.enqueue(i & 127);
+                    sum += q.dequeue();
+                }
+                return sum;
+            }
+        };
+    }
+
+    private static Subject pq(PriorityQueue<Integer> pq) {
+        return new Subject() {
+            int now;
+
+            public void insert(SplittableRandom rng) {
+                int pr = now + rng.nextInt(RANGE);
+                pq.enqueue(pr, pr);
+            }
+
+            public long hold(int ops, SplittableRandom rng) throws Exception {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    now = pq.dequeue();
+                    sum += now;
+                    int pr = now + rng.nextInt(RANGE);
+                    pq.enqueue(pr, pr);
+                }
+                return sum;
+            }
+        };
+    }
+
+    // -----------------------------
+    // SMALL TYPES
+    // -----------------------------
+    private interface Subject {
+        void insert(SplittableRandom rng) throws Exception;
+
+        long hold(int ops, SplittableRandom rng) throws Exception;
+    }
+
+    private record Point(int n, double nsPerOp, long ops, String status) {
+    }
+
+    private static final class Impl {
+        final String name;
+        final String adt;
+        final String contract; // cost of one hold op as the implementation documents it
+        final Supplier<Subject> factory;
+        final ArrayList<Point> points = new ArrayList<>();
+        String fitted = "-";
+        double slope = Double.NaN;
+        double contractError = Double.NaN;
+        boolean flagged;
+
+        Impl(String name, String adt, String contract, Supplier<Subject> factory) {
+            this.name = name;
+            this.adt = adt;
+            this.contract = contract;
+            this.factory = factory;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package benchmark;
+
+import chapter9.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+public class TimerBenchmark {
+
+    // -----------------------------
+    // CONFIG
+    // -----------------------------
+    private static final int STEPS = 20_000;          // virtual milliseconds simulated
+    private static final int SCHEDULE_PER_STEP = 100; // new timeouts per millisecond
+    private static final int CANCEL_PERCENT = 90;     // share cancelled before firing
+    private static final int MIN_TIMEOUT = 100;
+    private static final int MAX_TIMEOUT = 30_000;
+    private static final int TRIALS = 5;
+    private static final long SEED = 315_351_107L;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Timeout Benchmark (virtual clock, deterministic).");
+        System.out.println("Steps: " + STEPS + " ms, Timeouts/ms: " + SCHEDULE_PER_STEP
+                + ", Cancelled: " + CANCEL_PERCENT + "%, Timeout range: " + MIN_TIMEOUT + ".." + MAX_TIMEOUT
+                + " ms, Trials: " + TRIALS);
+        System.out.println();
+
+        sanity();
+
+        bench("BinaryHeapPQ + tombstones", TombstoneTimers::new);
+        bench("IndexedHeapPQ + remove", IndexedTimers::new);
+        bench("TimingWheelPQ + cancel", WheelTimers::new);
+    }
+
+    // -----------------------------
+    // SANITY
+    // -----------------------------
+    // An overdue deadline must still come out ahead of later expired ones.
+    private static void sanity() throws Exception {
+        TimingWheelPriorityQueue.ManualClock clock = new TimingWheelPriorityQueue.ManualClock(0);
+        TimingWheelPriorityQueue<Integer> wheel = new TimingWheelPriorityQueue<>(clock);
+        wheel.schedule(10, 10);
+        clock.set(20);
+        wheel.schedule(5, 5);
+        wheel.schedule(10, 11);
+        if (wheel.front() != 5 || wheel.dequeue() != 5 || wheel.dequeue() != 10 || wheel.dequeue() != 11) {
+            throw new RuntimeException("TimingWheelPQ overdue order failed");
+        }
+        System.out.println("Sanity checks: OK");
+        System.out.println();
+    }
+
+    // -----------------------------
+    // BENCHMARK
+    // -----------------------------
+    private static void bench(String label, TimersFactory factory) throws Exception {
+        // warmup
+        run(factory);
+
+        long[] times = new long[TRIALS];
+        long checksum = 0;
+        for (int t = 0; t < TRIALS; t++) {
+            Result r = run(factory);
+            times[t] = r.nanos;
+            checksum = r.checksum;
+        }
+        Arrays.sort(times);
+        long ops = (long) STEPS * SCHEDULE_PER_STEP;
+        System.out.printf("  %-28s  median: %8.2f ns/timeout   checksum: %d%n",
+                label, (double) times[TRIALS / 2] / ops, checksum);
+    }
+
+    // Each step advances the clock by one tick, schedules new timeouts, cancels the
+    // ones whose cancel time has come and fires whatever has expired.
+    @SuppressWarnings("unchecked")
+    private static Result run(TimersFactory factory) throws Exception {
+        Random rng = new Random(SEED);
+        TimingWheelPriorityQueue.ManualClock clock = new TimingWheelPriorityQueue.ManualClock(0);
+        Timers timers = factory.create(clock);
+
+        // cancellations due at each future tick, in a ring as long as the max timeout
+        ArrayList<Object>[] cancels = new ArrayList[MAX_TIMEOUT];
+        for (int i = 0; i < cancels.length; i++) cancels[i] = new ArrayList<>();
+
+        FireOrder order = new FireOrder();
+        long sum = 0;
+        int id = 0;
+        long start = System.nanoTime();
+        for (int step = 0; step < STEPS; step++) {
+            long now = clock.getAsLong();
+
+            for (int k = 0; k < SCHEDULE_PER_STEP; k++) {
+                int timeout = MIN_TIMEOUT + rng.nextInt(MAX_TIMEOUT - MIN_TIMEOUT);
+                Object handle = timers.schedule(now + timeout, id++);
+                if (rng.nextInt(100) < CANCEL_PERCENT) {
+                    int cancelAfter = 1 + rng.nextInt(timeout - 1);
+                    cancels[(int) ((now + cancelAfter) % MAX_TIMEOUT)].add(handle);
+                }
+            }
+
+            ArrayList<Object> due = cancels[(int) (now % MAX_TIMEOUT)];
+            for (Object h : due) timers.cancel(h);
+            due.clear();
+
+            sum += timers.fire(now, order);
+            clock.advance(1);
+        }
+        long end = System.nanoTime();
+
+        return new Result(end - start, sum);
+    }
+
+    // -----------------------------
+    // IMPLEMENTATIONS
+    // -----------------------------
+
+    // Cancelled entries stay in the heap and are skipped when they reach the top.
+    private static class TombstoneTimers implements Timers {
+        private static class Entry {
+            final int id;
+            boolean cancelled;
+            Entry(int id) {
+                this.id = id;
+            }
+        }
+
+        private final BinaryHeapPriorityQueue<Entry> pq = new BinaryHeapPriorityQueue<>();
+
+        TombstoneTimers(TimingWheelPriorityQueue.ManualClock clock) {
+        }
+
+        @Override
+        public Object schedule(long deadline, int id) {
+            Entry e = new Entry(id);
+            pq.enqueue((int) deadline, e);
+            return e;
+        }
+
+        @Override
+        public void cancel(Object handle) {
+            ((Entry) handle).cancelled = true;
+        }
+
+        @Override
+        public long fire(long now, FireOrder order) throws Exception {
+            long sum = 0;
+            while (!pq.isEmpty() && pq.frontPriority() <= now) {
+                order.fired(pq.frontPriority());
+                Entry e = pq.dequeue();
+                if (!e.cancelled) sum += e.id;
+            }
+            return sum;
+        }
+    }
+
+    private static class IndexedTimers implements Timers {
+        private final IndexedHeapPriorityQueue<Integer> pq = new IndexedHeapPriorityQueue<>();
+
+        IndexedTimers(TimingWheelPriorityQueue.ManualClock clock) {
+        }
+
+        // handles are recycled slots, so pair each one with the id it was issued for
+        @Override
+        public Object schedule(long deadline, int id) {
+            int h = pq.insert((int) deadline, id);
+            return new int[] {h, id};
+        }
+
+        @Override
+        public void cancel(Object handle) {
+            int[] hi = (int[]) handle;
+            if (pq.contains(hi[0]) && pq.get(hi[0]) == hi[1]) pq.remove(hi[0]);
+        }
+
+        @Override
+        public long fire(long now, FireOrder order) throws Exception {
+            long sum = 0;
+            while (!pq.isEmpty() && pq.priorityOf(pq.frontHandle()) <= now) {
+                order.fired(pq.priorityOf(pq.frontHandle()));
+                sum += pq.dequeue();
+            }
+            return sum;
+        }
+    }
+
+    private static class WheelTimers implements Timers {
+        private final TimingWheelPriorityQueue<Integer> pq;
+
+        WheelTimers(TimingWheelPriorityQueue.ManualClock clock) {
+            pq = new TimingWheelPriorityQueue<>(clock);
+        }
+
+        @Override
+        public Object schedule(long deadline, int id) {
+            return pq.schedule(deadline, id);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void cancel(Object handle) {
+            pq.cancel((TimingWheelPriorityQueue.Timer<Integer>) handle);
+        }
+
+        @Override
+        public long fire(long now, FireOrder order) {
+            long sum = 0;
+            TimingWheelPriorityQueue.Timer<Integer> t;
+            while ((t = pq.poll()) != null) {
+                order.fired(t.getDeadline());
+                sum += t.getData();
+            }
+            return sum;
+        }
+    }
+
+    // -----------------------------
+    // SMALL TYPES
+    // -----------------------------
+    private interface Timers {
+        Object schedule(long deadline, int id);
+        void cancel(Object handle);
+        long fire(long now, FireOrder order) throws Exception;
+    }
+
+    // The checksum is a sum and cannot see ordering, so every fired deadline
+    // is also checked against the one before it.
+    private static class FireOrder {
+        private long last = Long.MIN_VALUE;
+
+        void fired(long deadline) {
+            if (deadline < last) {
+                throw new RuntimeException("Deadline " + deadline + " fired after " + last);
+            }
+            last = deadline;
+        }
+    }
+
+    private interface TimersFactory {
+        Timers create(TimingWheelPriorityQueue.ManualClock clock);
+    }
+
+    private static class Result {
+        final long nanos;
+        final long checksum;
+        Result(long nanos, long checksum) {
+            this.nanos = nanos;
+            this.checksum = checksum;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package benchmark;
+
+import chapter6.DataLoader;
+import chapter9.*;
+
+import java.util.Arrays;
+
+public class TopKBenchmark {
+
+    // -----------------------------
+    // CONFIG
+    // -----------------------------
+    private static final String DEFAULT_FILE = "numbers.txt";
+    private static final int[] KS = {10, 100, 1_000, 10_000};
+    private static final int WARMUP = 3;
+    private static final int TRIALS = 5;
+
+    public static void main(String[] args) throws Exception {
+        String file = args.length > 0 ? args[0] : DEFAULT_FILE;
+        int[] numbers = DataLoader.loadArray(file);
+
+        System.out.println("Streaming Top-K Benchmark (keep the K smallest values).");
+        System.out.println("File: " + file + ", Values: " + numbers.length + ", Trials: " + TRIALS);
+        System.out.println();
+
+        for (int k : KS) {
+            if (k > numbers.length) continue;
+            System.out.println("K = " + k);
+            bench("MinMaxHeapPQ (bounded)", numbers, k, TopKBenchmark::boundedMinMax);
+            bench("MinMaxHeapPQ (evict via max)", numbers, k, TopKBenchmark::evictMinMax);
+            bench("BinaryHeapPQ (all, then K)", numbers, k, TopKBenchmark::fullHeap);
+            bench("Arrays.sort (all, then K)", numbers, k, TopKBenchmark::sortAll);
+            System.out.println();
+        }
+    }
+
+    // -----------------------------
+    // BENCHMARK
+    // -----------------------------
+    private static void bench(String label, int[] numbers, int k, TopK impl) throws Exception {
+        for (int w = 0; w < WARMUP; w++) {
+            impl.run(numbers, k);
+        }
+
+        long[] times = new long[TRIALS];
+        long checksum = 0;
+        for (int t = 0; t < TRIALS; t++) {
+            long start = System.nanoTime();
+            checksum = impl.run(numbers, k);
+            times[t] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        System.out.printf("  %-30s  median: %8.2f ns/value   checksum: %d%n",
+                label, (double) times[TRIALS / 2] / numbers.length, checksum);
+    }
+
+    // -----------------------------
+    // IMPLEMENTATIONS
+    // -----------------------------
+
+    // The bounded queue rejects values no better than its current worst in O(1),
+    // but the caller still boxes every value before offering it.
+    private static long boundedMinMax(int[] numbers, int k) throws Exception {
+        MinMaxHeapPriorityQueue<Integer> pq = new MinMaxHeapPriorityQueue<>(k);
+        for (int v : numbers) {
+            pq.offer(v, v);
+        }
+        return drain(pq, k);
+    }
+
+    // Same structure unbounded, with the caller doing the eviction; values that
+    // lose to the current worst are never boxed.
+    private static long evictMinMax(int[] numbers, int k) throws Exception {
+        MinMaxHeapPriorityQueue<Integer> pq = new MinMaxHeapPriorityQueue<>();
+        for (int v : numbers) {
+            if (pq.size() < k) {
+                pq.enqueue(v, v);
+            } else if (v < pq.peekMaxPriority()) {
+                pq.dequeueMax();
+                pq.enqueue(v, v);
+            }
+        }
+        return drain(pq, k);
+    }
+
+    // Buffers the whole stream: O(n) memory instead of O(k).
+    private static long fullHeap(int[] numbers, int k) throws Exception {
+        BinaryHeapPriorityQueue<Integer> pq = new BinaryHeapPriorityQueue<>();
+        for (int v : numbers) {
+            pq.enqueue(v, v);
+        }
+        return drain(pq, k);
+    }
+
+    private static long sortAll(int[] numbers, int k) {
+        int[] copy = numbers.clone();
+        Arrays.sort(copy);
+        long sum = 0;
+        for (int i = 0; i < k; i++) {
+            sum = sum * 31 + copy[i];
+        }
+        return sum;
+    }
+
+    // Order-sensitive checksum of the K best values, best first.
+    private static long drain(PriorityQueue<Integer> pq, int k) throws Exception {
+        long sum = 0;
+        for (int i = 0; i < k; i++) {
+            sum = sum * 31 + pq.dequeue();
+        }
+        return sum;
+    }
+
+    // -----------------------------
+    // SMALL TYPES
+    // -----------------------------
+    private interface TopK {
+        long run(int[] numbers, int k) throws Exception;
+    }
+}
@@ -0,0 +1,61 @@
+package benchmark.jmh;
+
+import chapter9.*;
+
+/**
+ * Builds an implementation from the name given in a @Param.
+ *
+ * RadixHeapPQ and TimingWheelPQ are left out: they only accept priorities
+ * that do not go below the last one dequeued (or below the clock), which W2
+ * breaks. ExternalPQ and DurablePQ need a directory and are covered by their
+ * own benchmarks.
+ */
+final class Implementations {
+
+    // W3 priorities go up to this, so BucketPQ is sized for it
+    static final int MAX_PRIORITY = 100_000;
+
+    private Implementations() {
+    }
+
+    static Stack<Integer> stack(String name) {
+        return switch (name) {
+            case "ArrayListStack" -> new ArrayListStack<>();
+            case "ArrayStack" -> new ArrayStack<>();
+            case "DLinkedListStack" -> new DLinkedListStack<>();
+            case "ListStack" -> new ListStack<>();
+            default -> throw new IllegalArgumentException("Unknown stack: " + name);
+        };
+    }
+
+    static Queue<Integer> queue(String name) {
+        return switch (name) {
+            case "ArrayListQueue" -> new ArrayListQueue<>();
+            case "ArrayQueue" -> new ArrayQueue<>();
+            case "DLinkedListQueue" -> new DLinkedListQueue<>();
+            default -> throw new IllegalArgumentException("Unknown queue: " + name);
+        };
+    }
+
+    static PriorityQueue<Integer> priorityQueue(String name) {
+        return switch (name) {
+            case "SortedArrayList" -> new SortedArrayListPriorityQueue<>();
+            case "SortedDLinkedList" -> new SortedDLinkedListPriorityQueue<>();
+            case "BinaryHeap" -> new BinaryHeapPriorityQueue<>();
+            case "IntKeyHeap" -> new IntKeyHeapPriorityQueue<>();
+            case "DaryHeap4" -> new DaryHeapPriorityQueue<>(4);
+            case "DaryHeap8" -> new DaryHeapPriorityQueue<>(8);
+            case "IndexedHeap" -> new IndexedHeapPriorityQueue<>();
+            case "MinMaxHeap" -> new MinMaxHeapPriorityQueue<>();
+            case "Bucket" -> new BucketPriorityQueue<>(0, MAX_PRIORITY);
+            case "PairingHeap" -> new PairingHeapPriorityQueue<>();
+            case "FibonacciHeap" -> new FibonacciHeapPriorityQueue<>();
+            case "Adaptive" -> new AdaptivePriorityQueue<>();
+            // the thread-safe queues, run single-threaded to show what their locking costs
+            case "SynchronizedBinaryHeap" -> new SynchronizedPriorityQueue<>(new BinaryHeapPriorityQueue<>());
+            case "FlatCombining" -> new FlatCombiningPriorityQueue<>();
+            case "MultiQueue" -> new MultiQueuePriorityQueue<>(1);
+            default -> throw new IllegalArgumentException("Unknown priority queue: " + name);
+        };
+    }
+}
@@ -0,0 +1,119 @@
+package benchmark.jmh;
+
+import chapter9.PriorityQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * W1 fill/drain with uniform priorities, W2 60/35/5 mixed ops on a queue
+ * prefilled to size, and W3 fill/drain with skewed priorities. Scores are
+ * average ns per enqueue/dequeue/front.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PriorityQueueBenchmark {
+
+    @State(Scope.Thread)
+    public static class Data {
+        @Param({"SortedArrayList", "SortedDLinkedList", "BinaryHeap", "IntKeyHeap", "DaryHeap4", "DaryHeap8",
+                "IndexedHeap", "MinMaxHeap", "Bucket", "PairingHeap", "FibonacciHeap", "Adaptive",
+                "SynchronizedBinaryHeap", "FlatCombining", "MultiQueue"})
+        public String impl;
+
+        @Param({"1000", "10000"})
+        public int size;
+
+        PriorityQueue<Integer> pq;
+        int cycles;
+        Integer[] values;
+        int[] uniform;
+        int[] skewed;
+
+        int[] prefillPriorities;
+        Integer[] prefillValues;
+        byte[] ops;
+        int[] opPriorities;
+        Integer[] opValues;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            pq = Implementations.priorityQueue(impl);
+            cycles = Workloads.cycles(size);
+            Random rng = new Random(Workloads.SEED);
+            values = Workloads.values(size, rng);
+            uniform = Workloads.uniformPriorities(size, rng);
+            skewed = Workloads.skewedPriorities(size, rng);
+
+            prefillPriorities = Workloads.uniformPriorities(size, rng);
+            prefillValues = Workloads.values(size, rng);
+            ops = Workloads.mixedOps(Workloads.MIXED_OPS, rng);
+            opPriorities = Workloads.uniformPriorities(Workloads.MIXED_OPS, rng);
+            opValues = Workloads.values(Workloads.MIXED_OPS, rng);
+        }
+    }
+
+    // Puts the queue back to size prefilled elements before every W2 batch.
+    @State(Scope.Thread)
+    public static class Prefilled {
+        @Setup(Level.Invocation)
+        public void reset(Data d) throws Exception {
+            while (!d.pq.isEmpty()) d.pq.dequeue();
+            for (int i = 0; i < d.size; i++) d.pq.enqueue(d.prefillPriorities[i], d.prefillValues[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workloads.BULK_OPS)
+    public void w1FillDrain(Data d, Blackhole bh) throws Exception {
+        fillDrain(d, d.uniform, bh);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workloads.MIXED_OPS)
+    public void w2Mixed(Data d, Prefilled p, Blackhole bh) throws Exception {
+        PriorityQueue<Integer> pq = d.pq;
+        for (int i = 0; i < Workloads.MIXED_OPS; i++) {
+            switch (d.ops[i]) {
+                case Workloads.PUSH -> pq.enqueue(d.opPriorities[i], d.opValues[i]);
+                case Workloads.POP -> {
+                    if (!pq.isEmpty()) bh.consume(pq.dequeue());
+                }
+                default -> {
+                    if (!pq.isEmpty()) bh.consume(pq.front());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workloads.BULK_OPS)
+    public void w3Skewed(Data d, Blackhole bh) throws Exception {
+        fillDrain(d, d.skewed, bh);
+    }
+
+    private static void fillDrain(Data d, int[] priorities, Blackhole bh) throws Exception {
+        PriorityQueue<Integer> pq = d.pq;
+        for (int c = 0; c < d.cycles; c++) {
+            for (int i = 0; i < d.size; i++) pq.enqueue(priorities[i], d.values[i]);
+            for (int i = 0; i < d.size; i++) bh.consume(pq.dequeue());
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package benchmark.jmh;
+
+import chapter9.Queue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * W1 enqueue/dequeue fill and drain, and W2 60/35/5 enqueue/dequeue/front on
+ * a queue prefilled to size. Scores are average ns per operation. W3 only
+ * applies to priority queues.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class QueueBenchmark {
+
+    @State(Scope.Thread)
+    public static class Data {
+        @Param({"ArrayListQueue", "ArrayQueue", "DLinkedListQueue"})
+        public String impl;
+
+        @Param({"1000", "10000"})
+        public int size;
+
+        Queue<Integer> queue;
+        int cycles;
+        Integer[] values;
+
+        Integer[] prefillValues;
+        byte[] ops;
+        Integer[] opValues;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            queue = Implementations.queue(impl);
+            cycles = Workloads.cycles(size);
+            Random rng = new Random(Workloads.SEED);
+            values = Workloads.values(size, rng);
+
+            prefillValues = Workloads.values(size, rng);
+            ops = Workloads.mixedOps(Workloads.MIXED_OPS, rng);
+            opValues = Workloads.values(Workloads.MIXED_OPS, rng);
+        }
+    }
+
+    // Puts the queue back to size prefilled elements before every W2 batch.
+    @State(Scope.Thread)
+    public static class Prefilled {
+        @Setup(Level.Invocation)
+        public void reset(Data d) throws Exception {
+            while (!d.queue.isEmpty()) d.queue.dequeue();
+            for (int i = 0; i < d.size; i++) d.queue.enqueue(d.prefillValues[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workloads.BULK_OPS)
+    public void w1FillDrain(Data d, Blackhole bh) throws Exception {
+        Queue<Integer> queue = d.queue;
+        for (int c = 0; c < d.cycles; c++) {
+            for (int i = 0; i < d.size; i++) queue.enqueue(d.values[i]);
+            for (int i = 0; i < d.size; i++) bh.consume(queue.dequeue());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workloads.MIXED_OPS)
+    public void w2Mixed(Data d, Prefilled p, Blackhole bh) throws Exception {
+        Queue<Integer> queue = d.queue;
+        for (int i = 0; i < Workloads.MIXED_OPS; i++) {
+            switch (d.ops[i]) {
+                case Workloads.PUSH -> queue.enqueue(d.opValues[i]);
+                case Workloads.POP -> {
+                    if (!queue.isEmpty()) bh.consume(queue.dequeue());
+                }
+                default -> {
+                    if (!queue.isEmpty()) bh.consume(queue.front());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package benchmark.jmh;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Entry point of benchmarks.jar. Takes the usual JMH command line, but unless
+ * -rf or -rff is given, writes JSON to jmh/results/jmh-yyyyMMdd-HHmmss.json
+ * (next to the target/ directory holding the jar, whatever the working
+ * directory) so every run leaves a file that can be archived.
+ */
+public class RunBenchmarks {
+
+    // options that only print something; plain JMH handles those
+    private static final List<String> INFO_OPTIONS = List.of("-h", "-l", "-lp", "-lprof", "-lrf");
+
+    public static void main(String[] args) throws Exception {
+        for (String a : args) {
+            if (INFO_OPTIONS.contains(a)) {
+                Main.main(args);
+                return;
+            }
+        }
+
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        ChainedOptionsBuilder opts = new OptionsBuilder().parent(cmd);
+        if (!cmd.getResultFormat().hasValue()) {
+            opts.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmd.getResult().hasValue()) {
+            Path dir = resultsDir();
+            Files.createDirectories(dir);
+            String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            opts.result(dir.resolve("jmh-" + stamp + ".json").toString());
+        }
+        new Runner(opts.build()).run();
+    }
+
+    // jmh/target/benchmarks.jar or jmh/target/classes -> jmh/results
+    private static Path resultsDir() throws Exception {
+        CodeSource src = RunBenchmarks.class.getProtectionDomain().getCodeSource();
+        if (src == null) return Path.of("results");
+        Path target = Path.of(src.getLocation().toURI()).getParent();
+        return target.resolveSibling("results");
+    }
+}
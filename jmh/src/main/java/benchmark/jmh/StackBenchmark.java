@@ -0,0 +1,99 @@
+package benchmark.jmh;
+
+import chapter9.Stack;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * W1 push/pop fill and drain, and W2 60/35/5 push/pop/top on a stack
+ * prefilled to size. Scores are average ns per operation. W3 only applies
+ * to priority queues.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StackBenchmark {
+
+    @State(Scope.Thread)
+    public static class Data {
+        @Param({"ArrayListStack", "ArrayStack", "DLinkedListStack", "ListStack"})
+        public String impl;
+
+        @Param({"1000", "10000"})
+        public int size;
+
+        Stack<Integer> stack;
+        int cycles;
+        Integer[] values;
+
+        Integer[] prefillValues;
+        byte[] ops;
+        Integer[] opValues;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            stack = Implementations.stack(impl);
+            cycles = Workloads.cycles(size);
+            Random rng = new Random(Workloads.SEED);
+            values = Workloads.values(size, rng);
+
+            prefillValues = Workloads.values(size, rng);
+            ops = Workloads.mixedOps(Workloads.MIXED_OPS, rng);
+            opValues = Workloads.values(Workloads.MIXED_OPS, rng);
+        }
+    }
+
+    // Puts the stack back to size prefilled elements before every W2 batch.
+    @State(Scope.Thread)
+    public static class Prefilled {
+        @Setup(Level.Invocation)
+        public void reset(Data d) throws Exception {
+            while (!d.stack.isEmpty()) d.stack.pop();
+            for (int i = 0; i < d.size; i++) d.stack.push(d.prefillValues[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workloads.BULK_OPS)
+    public void w1FillDrain(Data d, Blackhole bh) throws Exception {
+        Stack<Integer> stack = d.stack;
+        for (int c = 0; c < d.cycles; c++) {
+            for (int i = 0; i < d.size; i++) stack.push(d.values[i]);
+            for (int i = 0; i < d.size; i++) bh.consume(stack.pop());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(Workloads.MIXED_OPS)
+    public void w2Mixed(Data d, Prefilled p, Blackhole bh) throws Exception {
+        Stack<Integer> stack = d.stack;
+        for (int i = 0; i < Workloads.MIXED_OPS; i++) {
+            switch (d.ops[i]) {
+                case Workloads.PUSH -> stack.push(d.opValues[i]);
+                case Workloads.POP -> {
+                    if (!stack.isEmpty()) bh.consume(stack.pop());
+                }
+                default -> {
+                    if (!stack.isEmpty()) bh.consume(stack.top());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package benchmark.jmh;
+
+import java.util.Random;
+
+/**
+ * Pre-drawn inputs for W1, W2 and W3, so the random number generator and the
+ * boxing of values stay outside the measured code. Draws follow
+ * BenchmarkDriver: uniform priorities in [0, 10000), W3's 90/10 skew, and
+ * the 60/35/5 push/pop/peek mix.
+ */
+final class Workloads {
+
+    static final long SEED = 315_351_107L;
+
+    // W1/W3: every invocation moves this many elements in and out, in
+    // fill/drain cycles of size elements, so results come out per element
+    static final int BULK_OPS = 2_000_000;
+
+    // W2: operations per invocation after prefilling size elements
+    static final int MIXED_OPS = 60_000;
+
+    static final byte PUSH = 0;
+    static final byte POP = 1;
+    static final byte PEEK = 2;
+
+    private Workloads() {
+    }
+
+    static int cycles(int size) {
+        if (size <= 0 || BULK_OPS % (2 * size) != 0) {
+            throw new IllegalArgumentException("size must divide " + BULK_OPS / 2 + ": " + size);
+        }
+        return BULK_OPS / (2 * size);
+    }
+
+    static Integer[] values(int n, Random rng) {
+        Integer[] v = new Integer[n];
+        for (int i = 0; i < n; i++) v[i] = rng.nextInt();
+        return v;
+    }
+
+    static int[] uniformPriorities(int n, Random rng) {
+        int[] p = new int[n];
+        for (int i = 0; i < n; i++) p[i] = rng.nextInt(10_000);
+        return p;
+    }
+
+    static int[] skewedPriorities(int n, Random rng) {
+        int[] p = new int[n];
+        for (int i = 0; i < n; i++) {
+            // 90% in 0..10, the rest spread up to MAX_PRIORITY
+            p[i] = rng.nextInt(100) < 90 ? rng.nextInt(11)
+                    : 11 + rng.nextInt(Implementations.MAX_PRIORITY - 11 + 1);
+        }
+        return p;
+    }
+
+    static byte[] mixedOps(int n, Random rng) {
+        byte[] ops = new byte[n];
+        for (int i = 0; i < n; i++) {
+            int r = rng.nextInt(100);
+            ops[i] = r < 60 ? PUSH : r < 95 ? POP : PEEK;
+        }
+        return ops;
+    }
+}
@@ -0,0 +1,290 @@
+package chapter9;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Priority queue that watches its own workload and changes representation.
+ *
+ * Every WINDOW operations it looks at the current size, the share of
+ * enqueues and the range of priorities seen, and picks one of:
+ *
+ *   SORTED_ARRAY  when the queue is tiny and an enqueue is expected to shift
+ *                 only a few elements
+ *   BUCKET        when every priority seen fits in a range that is small
+ *                 compared to the number of elements
+ *   BINARY_HEAP   otherwise
+ *
+ * A switch drains the old structure once into parallel arrays and builds the
+ * new one from them in a single bulk pass. To avoid thrashing, a new choice
+ * must win CONFIRM windows in a row, the current representation must have
+ * been in place for MIN_DWELL windows, and the thresholds for leaving a
+ * representation are looser than the ones for entering it. An enqueue outside
+ * the bucket range forces an immediate switch. Every switch is logged with
+ * its reason; see switches().
+ */
+public class AdaptivePriorityQueue<T> implements PriorityQueue<T> {
+
+    public enum Representation { SORTED_ARRAY, BINARY_HEAP, BUCKET }
+
+    /** One representation change and what triggered it. */
+    public record Switch(long operation, Representation from, Representation to,
+                         int size, String reason, long transferNanos) {
+    }
+
+    static final int WINDOW = 4096;
+    private static final int CONFIRM = 2;
+    private static final int MIN_DWELL = 4;
+    private static final int MAX_LOG = 256;
+
+    // sorted array: enter at or below the first size/shift, leave above the second
+    private static final int TINY_ENTER = 64;
+    private static final int TINY_LEAVE = 256;
+    private static final double SHIFT_ENTER = 8;
+    private static final double SHIFT_LEAVE = 32;
+
+    // buckets allowed per element before the bucket arrays cost more than they save
+    private static final int BUCKETS_PER_ELEMENT = 16;
+
+    private Representation representation = Representation.SORTED_ARRAY;
+    private PriorityQueue<T> impl = new SortedArrayListPriorityQueue<>();
+    private int bucketMin;
+    private int bucketMax;
+
+    // largest priority enqueued since the queue was last empty
+    private int contentMax = Integer.MIN_VALUE;
+
+    // current window
+    private int windowOps;
+    private int windowEnqueues;
+    private int windowMin = Integer.MAX_VALUE;
+    private int windowMax = Integer.MIN_VALUE;
+
+    private Representation candidate;
+    private int streak;
+    private int windowsSinceSwitch;
+
+    private long operations;
+    private long switchCount;
+    private final ArrayList<Switch> log = new ArrayList<>();
+
+    @Override
+    public void enqueue(int priority, T data) {
+        if (representation == Representation.BUCKET && (priority < bucketMin || priority > bucketMax)) {
+            outOfBucketRange(priority);
+        }
+        impl.enqueue(priority, data);
+
+        if (priority > contentMax) contentMax = priority;
+        if (priority < windowMin) windowMin = priority;
+        if (priority > windowMax) windowMax = priority;
+        windowEnqueues++;
+        tick();
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        T result = impl.dequeue();
+        if (impl.isEmpty()) {
+            contentMax = Integer.MIN_VALUE;
+        }
+        tick();
+        return result;
+    }
+
+    @Override
+    public T front() throws Exception {
+        T result = impl.front();
+        tick();
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return impl.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return impl.isEmpty();
+    }
+
+    public Representation representation() {
+        return representation;
+    }
+
+    public long operations() {
+        return operations;
+    }
+
+    public long switchCount() {
+        return switchCount;
+    }
+
+    /** The most recent switches, oldest first (at most MAX_LOG of them). */
+    public List<Switch> switches() {
+        return Collections.unmodifiableList(new ArrayList<>(log));
+    }
+
+    // -----------------------------
+    // choosing a representation
+    // -----------------------------
+
+    private void tick() {
+        operations++;
+        if (++windowOps == WINDOW) {
+            evaluate();
+        }
+    }
+
+    private void evaluate() {
+        int size = impl.size();
+        double enqueueShare = (double) windowEnqueues / windowOps;
+        // a sorted-array enqueue shifts every queued element that beats the new
+        // one, half the queue on average
+        double shift = enqueueShare * size / 2;
+
+        int lo = size == 0 ? windowMin : Math.min(frontPriority(), windowMin);
+        int hi = Math.max(contentMax, windowMax);
+        long range = hi >= lo ? (long) hi - lo + 1 : 0;
+        long bucketLimit = bucketLimit(size);
+
+        Representation next;
+        String reason;
+        boolean sorted = representation == Representation.SORTED_ARRAY;
+        boolean bucket = representation == Representation.BUCKET;
+        if (sorted ? size <= TINY_LEAVE && shift <= SHIFT_LEAVE : size <= TINY_ENTER && shift <= SHIFT_ENTER) {
+            next = Representation.SORTED_ARRAY;
+            reason = String.format("expected shift %.1f per op (size %d, %.0f%% enqueues)",
+                    shift, size, 100 * enqueueShare);
+        } else if (range > 0 && range <= (bucket ? 2 * bucketLimit : bucketLimit)) {
+            next = Representation.BUCKET;
+            reason = String.format("priority range %d within %d buckets for size %d", range, bucketLimit, size);
+        } else {
+            next = Representation.BINARY_HEAP;
+            reason = String.format("expected shift %.1f per op and priority range %d over %d buckets",
+                    shift, range, bucketLimit);
+        }
+
+        windowsSinceSwitch++;
+        if (next == representation) {
+            candidate = null;
+            streak = 0;
+        } else {
+            if (next == candidate) {
+                streak++;
+            } else {
+                candidate = next;
+                streak = 1;
+            }
+            if (streak >= CONFIRM && windowsSinceSwitch >= MIN_DWELL) {
+                migrate(next, reason, lo, hi);
+            }
+        }
+
+        windowOps = 0;
+        windowEnqueues = 0;
+        windowMin = Integer.MAX_VALUE;
+        windowMax = Integer.MIN_VALUE;
+    }
+
+    private static long bucketLimit(int size) {
+        return Math.min(PriorityQueues.MAX_BUCKETS, (long) BUCKETS_PER_ELEMENT * Math.max(size, WINDOW));
+    }
+
+    private void outOfBucketRange(int priority) {
+        int lo = Math.min(bucketMin, priority);
+        int hi = Math.max(bucketMax, priority);
+        long range = (long) hi - lo + 1;
+        String reason = "priority " + priority + " outside bucket range [" + bucketMin + ", " + bucketMax + "]";
+        if (range <= 2 * bucketLimit(impl.size())) {
+            migrate(Representation.BUCKET, reason, lo, hi);
+        } else {
+            migrate(Representation.BINARY_HEAP, reason, lo, hi);
+        }
+    }
+
+    // -----------------------------
+    // bulk transfer
+    // -----------------------------
+
+    @SuppressWarnings("unchecked")
+    private void migrate(Representation target, String reason, int lo, int hi) {
+        long start = System.nanoTime();
+        int n = impl.size();
+        int[] priorities = new int[n];
+        T[] items = (T[]) new Object[n];
+        drain(priorities, items);
+
+        switch (target) {
+            case BINARY_HEAP -> impl = new BinaryHeapPriorityQueue<>(priorities, items);
+            case SORTED_ARRAY -> {
+                SortedArrayListPriorityQueue<T> sorted = new SortedArrayListPriorityQueue<>();
+                sorted.enqueueAll(priorities, items);
+                impl = sorted;
+            }
+            case BUCKET -> {
+                // leave headroom so the next few out-of-range priorities do not force another switch
+                long pad = Math.max(16, ((long) hi - lo) / 2);
+                bucketMin = (int) Math.max(Integer.MIN_VALUE, lo - pad);
+                bucketMax = (int) Math.min(Integer.MAX_VALUE, hi + pad);
+                BucketPriorityQueue<T> buckets = new BucketPriorityQueue<>(bucketMin, bucketMax);
+                for (int i = 0; i < n; i++) {
+                    buckets.enqueue(priorities[i], items[i]);
+                }
+                impl = buckets;
+            }
+        }
+
+        if (log.size() == MAX_LOG) {
+            log.remove(0);
+        }
+        log.add(new Switch(operations, representation, target, n, reason, System.nanoTime() - start));
+        switchCount++;
+        representation = target;
+        candidate = null;
+        streak = 0;
+        windowsSinceSwitch = 0;
+    }
+
+    private int frontPriority() {
+        try {
+            return switch (representation) {
+                case BINARY_HEAP -> ((BinaryHeapPriorityQueue<T>) impl).frontPriority();
+                case SORTED_ARRAY -> ((SortedArrayListPriorityQueue<T>) impl).frontPriority();
+                case BUCKET -> ((BucketPriorityQueue<T>) impl).frontPriority();
+            };
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Empties impl into the arrays. Ordered sources are drained front to back so
+    // equal priorities keep their FIFO order; the heap is copied out unordered.
+    private void drain(int[] priorities, T[] items) {
+        try {
+            switch (representation) {
+                case BINARY_HEAP -> ((BinaryHeapPriorityQueue<T>) impl).drainTo(priorities, items);
+                case SORTED_ARRAY -> {
+                    SortedArrayListPriorityQueue<T> sorted = (SortedArrayListPriorityQueue<T>) impl;
+                    for (int i = 0; !sorted.isEmpty(); i++) {
+                        priorities[i] = sorted.frontPriority();
+                        items[i] = sorted.dequeue();
+                    }
+                }
+                case BUCKET -> {
+                    BucketPriorityQueue<T> buckets = (BucketPriorityQueue<T>) impl;
+                    for (int i = 0; !buckets.isEmpty(); i++) {
+                        priorities[i] = buckets.frontPriority();
+                        items[i] = buckets.dequeue();
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // only thrown on an empty queue, which the loops never reach
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -23,6 +23,88 @@ public class BinaryHeapPriorityQueue<T> implements PriorityQueue<T> {
         this.size = 0;
     }
 
+    /**
+     * Builds a heap from parallel priority/item arrays in O(n) using
+     * bottom-up (Floyd) heapify instead of n separate enqueues.
+     */
+    @SuppressWarnings("unchecked")
+    public BinaryHeapPriorityQueue(int[] priorities, T[] items) {
+        checkBatch(priorities, items);
+        this.heap = (Entry<T>[]) new Entry[Math.max(16, priorities.length)];
+        this.size = 0;
+        append(priorities, items);
+        heapify();
+    }
+
+    /**
+     * Enqueues a batch. Large batches (relative to the current size) are
+     * appended and the whole array is re-heapified in O(n + k); small batches
+     * are sifted up one at a time in O(k log n).
+     */
+    public void enqueueAll(int[] priorities, T[] items) {
+        checkBatch(priorities, items);
+        int k = priorities.length;
+        ensureCapacity(size + k);
+
+        // heapify costs ~2(n+k) compares, k sift-ups cost ~k*log2(n+k)
+        int levels = 32 - Integer.numberOfLeadingZeros(size + k);
+        if ((long) k * levels > 2L * (size + k)) {
+            append(priorities, items);
+            heapify();
+        } else {
+            for (int i = 0; i < k; i++) {
+                heap[size] = new Entry<>(priorities[i], items[i]);
+                siftUp(size);
+                size++;
+            }
+        }
+    }
+
+    /**
+     * Removes every element into dst in priority order and returns the count.
+     * Works in place like heapsort: each removed root is parked in the slot
+     * freed at the end of the heap, so nothing is allocated along the way.
+     */
+    public int drainSorted(T[] dst) {
+        int n = size;
+        if (dst.length < n) {
+            throw new IllegalArgumentException("dst holds " + dst.length + " but queue has " + n);
+        }
+
+        // after this loop heap[0..n) holds the entries in descending priority
+        while (size > 1) {
+            size--;
+            swap(0, size);
+            siftDown(0);
+        }
+        size = 0;
+
+        for (int i = 0; i < n; i++) {
+            dst[i] = heap[n - 1 - i].data;
+            heap[n - 1 - i] = null;
+        }
+        return n;
+    }
+
+    /**
+     * Removes every element into the parallel arrays in heap-array order, not
+     * priority order, and returns the count. O(n); meant for handing the whole
+     * contents to another structure that will order them itself.
+     */
+    public int drainTo(int[] priorities, T[] items) {
+        int n = size;
+        if (priorities.length < n || items.length < n) {
+            throw new IllegalArgumentException("destination too small for " + n + " elements");
+        }
+        for (int i = 0; i < n; i++) {
+            priorities[i] = heap[i].priority;
+            items[i] = heap[i].data;
+            heap[i] = null;
+        }
+        size = 0;
+        return n;
+    }
+
     @Override
     public void enqueue(int priority, T data) {
         ensureCapacity(size + 1);
@@ -58,6 +140,16 @@ public class BinaryHeapPriorityQueue<T> implements PriorityQueue<T> {
         return heap[0].data;
     }
 
+    /**
+     * Priority of the element front() would return.
+     */
+    public int frontPriority() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return heap[0].priority;
+    }
+
     @Override
     public int size() {
         return size;
@@ -102,6 +194,25 @@ public class BinaryHeapPriorityQueue<T> implements PriorityQueue<T> {
         }
     }
 
+    private void append(int[] priorities, T[] items) {
+        for (int i = 0; i < priorities.length; i++) {
+            heap[size++] = new Entry<>(priorities[i], items[i]);
+        }
+    }
+
+    private void heapify() {
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    private static void checkBatch(int[] priorities, Object[] items) {
+        if (priorities.length != items.length) {
+            throw new IllegalArgumentException("priorities and items differ in length: "
+                    + priorities.length + " vs " + items.length);
+        }
+    }
+
     private void swap(int a, int b) {
         Entry<T> tmp = heap[a];
         heap[a] = heap[b];
@@ -112,6 +223,6 @@ public class BinaryHeapPriorityQueue<T> implements PriorityQueue<T> {
         if (needed <= heap.length) {
             return;
         }
-        heap = Arrays.copyOf(heap, heap.length * 2);
+        heap = Arrays.copyOf(heap, Math.max(needed, heap.length * 2));
     }
 }
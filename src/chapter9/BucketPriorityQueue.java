@@ -0,0 +1,204 @@
+package chapter9;
+
+import java.util.Arrays;
+
+/**
+ * Priority queue for small integer priorities in a fixed range [min, max].
+ *
+ * There is one FIFO bucket per priority, so equal priorities come out in
+ * insertion order. Enqueue is O(1). A two-level bitmap of non-empty buckets
+ * finds the next bucket with a couple of numberOfTrailingZeros calls, which
+ * makes dequeue amortized O(1) for ranges up to a few hundred thousand.
+ *
+ * Bucket chains are kept in parallel int/Object arrays with a free list, so
+ * steady-state enqueue/dequeue allocates nothing.
+ */
+public class BucketPriorityQueue<T> implements PriorityQueue<T> {
+
+    private static final int NIL = -1;
+
+    private final int minPriority;
+    private final int maxPriority;
+
+    // per bucket: first and last node of its FIFO chain
+    private final int[] head;
+    private final int[] tail;
+
+    // bit b of words is set when bucket b is non-empty; bit w of summary is set when words[w] != 0
+    private final long[] words;
+    private final long[] summary;
+
+    // node storage
+    private int[] next;
+    private Object[] items;
+    private int freeList = NIL;
+    private int nodesUsed;
+
+    private int size;
+    private int lowest; // lowest non-empty bucket, valid when size > 0
+
+    public BucketPriorityQueue(int minPriority, int maxPriority) {
+        if (maxPriority < minPriority) {
+            throw new IllegalArgumentException("maxPriority < minPriority");
+        }
+        long range = (long) maxPriority - minPriority + 1;
+        if (range > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("priority range too large for buckets: " + range);
+        }
+        this.minPriority = minPriority;
+        this.maxPriority = maxPriority;
+
+        int buckets = (int) range;
+        head = new int[buckets];
+        tail = new int[buckets];
+        Arrays.fill(head, NIL);
+        Arrays.fill(tail, NIL);
+        words = new long[(buckets + 63) >>> 6];
+        summary = new long[(words.length + 63) >>> 6];
+
+        next = new int[16];
+        items = new Object[16];
+    }
+
+    public int minPriority() {
+        return minPriority;
+    }
+
+    public int maxPriority() {
+        return maxPriority;
+    }
+
+    @Override
+    public void enqueue(int priority, T data) {
+        if (priority < minPriority || priority > maxPriority) {
+            throw new IllegalArgumentException("priority " + priority + " outside ["
+                    + minPriority + ", " + maxPriority + "]");
+        }
+        int b = priority - minPriority;
+        int node = allocNode();
+        items[node] = data;
+        next[node] = NIL;
+
+        if (head[b] == NIL) {
+            head[b] = node;
+            markNonEmpty(b);
+        } else {
+            next[tail[b]] = node;
+        }
+        tail[b] = node;
+
+        if (size == 0 || b < lowest) {
+            lowest = b;
+        }
+        size++;
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        int b = lowest;
+        int node = head[b];
+        T result = itemAt(node);
+
+        head[b] = next[node];
+        if (head[b] == NIL) {
+            tail[b] = NIL;
+            markEmpty(b);
+        }
+        items[node] = null;
+        next[node] = freeList;
+        freeList = node;
+
+        size--;
+        if (size > 0 && head[b] == NIL) {
+            lowest = nextNonEmpty(b + 1);
+        }
+        return result;
+    }
+
+    @Override
+    public T front() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return itemAt(head[lowest]);
+    }
+
+    /**
+     * Priority of the element front() would return.
+     */
+    public int frontPriority() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return minPriority + lowest;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int node) {
+        return (T) items[node];
+    }
+
+    private int allocNode() {
+        if (freeList != NIL) {
+            int node = freeList;
+            freeList = next[node];
+            return node;
+        }
+        if (nodesUsed == next.length) {
+            next = Arrays.copyOf(next, nodesUsed * 2);
+            items = Arrays.copyOf(items, nodesUsed * 2);
+        }
+        return nodesUsed++;
+    }
+
+    private void markNonEmpty(int b) {
+        int w = b >>> 6;
+        words[w] |= 1L << b;
+        summary[w >>> 6] |= 1L << w;
+    }
+
+    private void markEmpty(int b) {
+        int w = b >>> 6;
+        words[w] &= ~(1L << b);
+        if (words[w] == 0) {
+            summary[w >>> 6] &= ~(1L << w);
+        }
+    }
+
+    // Lowest non-empty bucket at or after b. Only called when one exists.
+    private int nextNonEmpty(int b) {
+        int w = b >>> 6;
+        if (w < words.length) {
+            long bits = words[w] & (-1L << b);
+            if (bits != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(bits);
+            }
+        }
+
+        int from = w + 1;
+        for (int s = from >>> 6; s < summary.length; s++) {
+            long bits = summary[s];
+            if (s == from >>> 6) {
+                bits &= -1L << from;
+            }
+            if (bits != 0) {
+                int word = (s << 6) + Long.numberOfTrailingZeros(bits);
+                return (word << 6) + Long.numberOfTrailingZeros(words[word]);
+            }
+        }
+        throw new IllegalStateException("bucket bitmap out of sync with size");
+    }
+}
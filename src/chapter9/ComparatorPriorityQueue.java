@@ -0,0 +1,178 @@
+package chapter9;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Function;
+
+/**
+ * Binary heap ordered by a Comparator over a sort key extracted from each item.
+ *
+ * The key is extracted once, on enqueue, and kept in an array parallel to the
+ * items, so a sift compares stored keys instead of calling the extractor (and
+ * whatever getters it chains) at every level. Equal keys come out in no
+ * particular order. For plain long keys LongKeyHeapPriorityQueue avoids the
+ * comparator and the boxing altogether.
+ */
+public class ComparatorPriorityQueue<T> {
+
+    private final Function<? super T, ?> keyExtractor;
+    private final Comparator<Object> comparator;
+
+    private Object[] keys;
+    private Object[] items;
+    private int size;
+
+    /**
+     * Orders items by comparing them directly.
+     */
+    public ComparatorPriorityQueue(Comparator<? super T> comparator) {
+        this(Function.identity(), comparator);
+    }
+
+    /**
+     * Orders items by key, smallest key first.
+     */
+    @SuppressWarnings("unchecked")
+    public <K> ComparatorPriorityQueue(Function<? super T, ? extends K> keyExtractor, Comparator<? super K> comparator) {
+        this.keyExtractor = keyExtractor;
+        this.comparator = (Comparator<Object>) comparator;
+        this.keys = new Object[16];
+        this.items = new Object[16];
+    }
+
+    public void enqueue(T data) {
+        ensureCapacity(size + 1);
+        siftUp(size, keyExtractor.apply(data), data);
+        size++;
+    }
+
+    /**
+     * Enqueues a batch, heapifying in O(n + k) when the batch is large
+     * relative to the queue.
+     */
+    public void enqueueAll(T[] batch) {
+        int k = batch.length;
+        ensureCapacity(size + k);
+
+        // heapify costs ~2(n+k) compares, k sift-ups cost ~k*log2(n+k)
+        int levels = 32 - Integer.numberOfLeadingZeros(size + k);
+        if ((long) k * levels > 2L * (size + k)) {
+            for (T item : batch) {
+                keys[size] = keyExtractor.apply(item);
+                items[size] = item;
+                size++;
+            }
+            for (int i = (size >>> 1) - 1; i >= 0; i--) {
+                siftDown(i, keys[i], items[i]);
+            }
+        } else {
+            for (T item : batch) {
+                siftUp(size, keyExtractor.apply(item), item);
+                size++;
+            }
+        }
+    }
+
+    public T dequeue() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return removeFront();
+    }
+
+    /** Removes and returns the front element, or null when empty. */
+    public T poll() {
+        return size == 0 ? null : removeFront();
+    }
+
+    /** Removes up to max elements into dst in priority order and returns how many. */
+    public int drainTo(T[] dst, int max) {
+        int n = Math.min(Math.min(max, size), dst.length);
+        for (int i = 0; i < n; i++) {
+            dst[i] = removeFront();
+        }
+        return n;
+    }
+
+    public T front() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return itemAt(0);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int i) {
+        return (T) items[i];
+    }
+
+    private T removeFront() {
+        T result = itemAt(0);
+
+        size--;
+        Object lastKey = keys[size];
+        Object lastItem = items[size];
+        keys[size] = null;
+        items[size] = null;
+
+        if (size > 0) {
+            siftDown(0, lastKey, lastItem);
+        }
+        return result;
+    }
+
+    // Moves the hole at i up until key fits, then fills it.
+    private void siftUp(int i, Object key, Object item) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            Object pk = keys[parent];
+            if (comparator.compare(key, pk) >= 0) {
+                break;
+            }
+            keys[i] = pk;
+            items[i] = items[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        items[i] = item;
+    }
+
+    // Moves the hole at i down until key fits, then fills it.
+    private void siftDown(int i, Object key, Object item) {
+        int half = size >>> 1; // nodes at or past half are leaves
+        while (i < half) {
+            int child = 2 * i + 1;
+            Object ck = keys[child];
+            int right = child + 1;
+            if (right < size && comparator.compare(keys[right], ck) < 0) {
+                child = right;
+                ck = keys[right];
+            }
+            if (comparator.compare(key, ck) <= 0) {
+                break;
+            }
+            keys[i] = ck;
+            items[i] = items[child];
+            i = child;
+        }
+        keys[i] = key;
+        items[i] = item;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= keys.length) {
+            return;
+        }
+        int newCap = Math.max(needed, keys.length * 2);
+        keys = Arrays.copyOf(keys, newCap);
+        items = Arrays.copyOf(items, newCap);
+    }
+}
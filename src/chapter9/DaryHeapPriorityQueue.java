@@ -0,0 +1,167 @@
+package chapter9;
+
+import java.util.Arrays;
+
+/**
+ * d-ary min-heap with arity 2, 4, 8 or 16 chosen at construction.
+ *
+ * A wider node makes the tree shallower (log_d n levels), which means fewer
+ * cache misses per dequeue on large heaps at the cost of more comparisons per
+ * level. Priorities are stored in their own int[] and the root is placed at
+ * index d-1, so the d children of every node start at a multiple of d. With
+ * 4-byte priorities, one sibling group of a 16-ary heap is exactly 64 bytes,
+ * and smaller arities never straddle a group boundary.
+ */
+public class DaryHeapPriorityQueue<T> implements PriorityQueue<T> {
+
+    private final int arity;
+    private final int shift;  // log2(arity)
+    private final int root;   // array index of the root, arity - 1
+
+    private int[] priorities;
+    private Object[] items;
+    private int size;
+
+    public DaryHeapPriorityQueue() {
+        this(4);
+    }
+
+    public DaryHeapPriorityQueue(int arity) {
+        this(arity, 16);
+    }
+
+    public DaryHeapPriorityQueue(int arity, int initialCapacity) {
+        if (arity != 2 && arity != 4 && arity != 8 && arity != 16) {
+            throw new IllegalArgumentException("arity must be 2, 4, 8 or 16: " + arity);
+        }
+        this.arity = arity;
+        this.shift = Integer.numberOfTrailingZeros(arity);
+        this.root = arity - 1;
+        int cap = root + Math.max(1, initialCapacity);
+        this.priorities = new int[cap];
+        this.items = new Object[cap];
+        this.size = 0;
+    }
+
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public void enqueue(int priority, T data) {
+        ensureCapacity(root + size + 1);
+        siftUp(root + size, priority, data);
+        size++;
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+
+        T result = itemAt(root);
+
+        size--;
+        int last = root + size;
+        int lastPriority = priorities[last];
+        Object lastItem = items[last];
+        items[last] = null;
+
+        if (size > 0) {
+            siftDown(root, lastPriority, lastItem);
+        }
+
+        return result;
+    }
+
+    @Override
+    public T front() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return itemAt(root);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int i) {
+        return (T) items[i];
+    }
+
+    // With the root at index d-1, the children of a are d*(a-d+2) .. d*(a-d+2)+d-1
+    // and the parent of a is (a >> shift) + d - 2. The child index is a long
+    // because it passes Integer.MAX_VALUE once a is past about 2^31 / d.
+    private long firstChild(int a) {
+        return (long) (a - root + 1) << shift;
+    }
+
+    private int parent(int a) {
+        return (a >> shift) + root - 1;
+    }
+
+    private void siftUp(int a, int priority, Object item) {
+        while (a > root) {
+            int p = parent(a);
+            int pp = priorities[p];
+            if (priority >= pp) {
+                break;
+            }
+            priorities[a] = pp;
+            items[a] = items[p];
+            a = p;
+        }
+        priorities[a] = priority;
+        items[a] = item;
+    }
+
+    private void siftDown(int a, int priority, Object item) {
+        int end = root + size;
+        while (true) {
+            long child = firstChild(a);
+            if (child >= end) {
+                break;
+            }
+            int first = (int) child;
+
+            // scan one aligned sibling group for the smallest child
+            int last = end - first < arity ? end : first + arity;
+            int best = first;
+            int bp = priorities[first];
+            for (int c = first + 1; c < last; c++) {
+                int cp = priorities[c];
+                if (cp < bp) {
+                    best = c;
+                    bp = cp;
+                }
+            }
+
+            if (priority <= bp) {
+                break;
+            }
+            priorities[a] = bp;
+            items[a] = items[best];
+            a = best;
+        }
+        priorities[a] = priority;
+        items[a] = item;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= priorities.length) {
+            return;
+        }
+        int newCap = Math.max(needed, priorities.length * 2);
+        priorities = Arrays.copyOf(priorities, newCap);
+        items = Arrays.copyOf(items, newCap);
+    }
+}
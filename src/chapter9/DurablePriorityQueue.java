@@ -0,0 +1,683 @@
+package chapter9;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * BinaryHeapPriorityQueue that survives a crash.
+ *
+ * Every enqueue and dequeue is appended to a write-ahead log before it is
+ * acknowledged (how durably depends on the SyncPolicy). Records are collected
+ * in memory and written as CRC-checked frames, one frame per group commit, so
+ * a single fsync covers every operation that arrived while the previous one
+ * was in flight. Dequeue records carry no payload: the heap is deterministic,
+ * so replaying the same operations from the same starting array removes the
+ * same elements.
+ *
+ * After snapshotEvery log records the queue rotates to a new log generation
+ * and writes the heap array, in heap order, to a snapshot file. Recovery
+ * loads the newest snapshot and replays only the logs written after it, so
+ * it takes time proportional to the log since the last snapshot. A torn
+ * frame at the end of the newest log is truncated away.
+ *
+ * Thread-safe. Files in dir: snapshot-GEN.bin and wal-GEN.log.
+ */
+public class DurablePriorityQueue<T> implements PriorityQueue<T>, AutoCloseable {
+
+    /** When an operation's log record reaches the disk. */
+    public enum SyncPolicy {
+        /** fsync before every operation returns. */
+        EVERY_OP,
+        /** Operations wait for a shared fsync; concurrent callers share one. */
+        GROUP,
+        /** fsync in the background every interval; a crash loses at most that window. */
+        INTERVAL,
+        /** Write full blocks in the background and leave fsync to the OS and sync(). */
+        NONE
+    }
+
+    private static final byte ENQUEUE = 1;
+    private static final byte DEQUEUE = 2;
+    private static final int FRAME_HEADER = 8;  // length + crc
+    private static final int SNAPSHOT_MAGIC = 0x50515331; // "PQS1"
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    private final Path dir;
+    private final ExternalPriorityQueue.Codec<T> codec;
+    private final SyncPolicy policy;
+    private final long intervalNanos;
+    private final long snapshotEvery;
+
+    // lock guards the heap and the record buffer; ioLock serializes log writes and rotation
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private final Condition work = lock.newCondition();
+    private final Condition durable = lock.newCondition();
+
+    private BinaryHeapPriorityQueue<T> heap;
+    private ByteBuffer active = ByteBuffer.allocate(BLOCK_SIZE);
+    private ByteBuffer spare = ByteBuffer.allocate(BLOCK_SIZE);
+    private long appendedLsn;
+    private long durableLsn;
+    private long sinceSnapshot;
+    private boolean snapshotting;
+    private boolean closed;
+    private IOException failure; // from the committer thread
+
+    private long generation;
+    private FileChannel log;
+    private boolean dirty; // written since the last fsync, guarded by ioLock
+    private final Thread committer;
+
+    private long syncs;
+    private long snapshots;
+    private long recoveredRecords;
+    private long recoveryNanos;
+
+    public DurablePriorityQueue(Path dir, ExternalPriorityQueue.Codec<T> codec, SyncPolicy policy) throws IOException {
+        this(dir, codec, policy, 10, 1 << 20);
+    }
+
+    /**
+     * Opens the queue in dir, recovering whatever a previous instance left there.
+     *
+     * @param intervalMillis fsync period for SyncPolicy.INTERVAL
+     * @param snapshotEvery  log records between snapshots
+     */
+    public DurablePriorityQueue(Path dir, ExternalPriorityQueue.Codec<T> codec, SyncPolicy policy,
+                                long intervalMillis, long snapshotEvery) throws IOException {
+        if (intervalMillis <= 0 || snapshotEvery <= 0) {
+            throw new IllegalArgumentException("intervalMillis and snapshotEvery must be positive");
+        }
+        this.dir = dir;
+        this.codec = codec;
+        this.policy = policy;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.snapshotEvery = snapshotEvery;
+
+        Files.createDirectories(dir);
+        recover();
+
+        if (policy == SyncPolicy.EVERY_OP) {
+            committer = null;
+        } else {
+            committer = new Thread(this::commitLoop, "pq-wal-committer");
+            committer.setDaemon(true);
+            committer.start();
+        }
+    }
+
+    @Override
+    public void enqueue(int priority, T data) {
+        long lsn;
+        boolean snapshot;
+        lock.lock();
+        try {
+            checkOpen();
+            int start = active.position();
+            while (true) {
+                try {
+                    active.put(ENQUEUE);
+                    active.putInt(priority);
+                    active.putInt(0);
+                    codec.encode(data, active);
+                    active.putInt(start + 5, active.position() - start - 9);
+                    break;
+                } catch (BufferOverflowException e) {
+                    active.position(start);
+                    grow();
+                } catch (RuntimeException | Error e) {
+                    // drop the partial record, or the next append would frame it into the log
+                    active.position(start);
+                    throw e;
+                }
+            }
+            heap.enqueue(priority, data);
+            lsn = appended();
+            snapshot = snapshotDue();
+        } finally {
+            lock.unlock();
+        }
+        afterAppend(lsn, snapshot);
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        T result;
+        long lsn;
+        boolean snapshot;
+        lock.lock();
+        try {
+            checkOpen();
+            result = heap.dequeue();
+            if (!active.hasRemaining()) {
+                grow();
+            }
+            active.put(DEQUEUE);
+            lsn = appended();
+            snapshot = snapshotDue();
+        } finally {
+            lock.unlock();
+        }
+        afterAppend(lsn, snapshot);
+        return result;
+    }
+
+    @Override
+    public T front() throws Exception {
+        lock.lock();
+        try {
+            return heap.front();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return heap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Writes and fsyncs everything logged so far, whatever the policy. */
+    public void sync() throws IOException {
+        commit(true);
+    }
+
+    public long syncCount() {
+        return syncs;
+    }
+
+    public long snapshotCount() {
+        return snapshots;
+    }
+
+    /** Log records replayed when this instance opened. */
+    public long recoveredRecords() {
+        return recoveredRecords;
+    }
+
+    public long recoveryNanos() {
+        return recoveryNanos;
+    }
+
+    /**
+     * Flushes and fsyncs the log and stops the committer. Does not snapshot.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            work.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (committer != null) {
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        commit(true);
+        log.close();
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("queue is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("write-ahead log failed", failure);
+        }
+    }
+
+    // Called with lock held after a record was added to active.
+    private long appended() {
+        sinceSnapshot++;
+        long lsn = ++appendedLsn;
+        if (policy == SyncPolicy.GROUP || active.position() >= BLOCK_SIZE) {
+            work.signal();
+        }
+        return lsn;
+    }
+
+    // Called with lock held; claims the next snapshot for the calling thread.
+    private boolean snapshotDue() {
+        if (snapshotting || sinceSnapshot < snapshotEvery) {
+            return false;
+        }
+        snapshotting = true;
+        return true;
+    }
+
+    private void grow() {
+        ByteBuffer bigger = ByteBuffer.allocate(active.capacity() * 2);
+        active.flip();
+        bigger.put(active);
+        active = bigger;
+    }
+
+    private void afterAppend(long lsn, boolean snapshot) {
+        try {
+            if (policy == SyncPolicy.EVERY_OP) {
+                commit(true);
+            } else if (policy == SyncPolicy.GROUP) {
+                awaitDurable(lsn);
+            }
+            if (snapshot) {
+                try {
+                    snapshot();
+                } finally {
+                    lock.lock();
+                    try {
+                        snapshotting = false;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void awaitDurable(long lsn) {
+        lock.lock();
+        try {
+            while (durableLsn < lsn && !closed && failure == null) {
+                durable.awaitUninterruptibly();
+            }
+            if (durableLsn < lsn && failure != null) {
+                throw new UncheckedIOException("write-ahead log failed", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // -----------------------------
+    // group commit
+    // -----------------------------
+
+    private void commitLoop() {
+        try {
+            while (true) {
+                lock.lock();
+                try {
+                    if (closed) {
+                        return;
+                    }
+                    switch (policy) {
+                        case GROUP -> {
+                            while (active.position() == 0 && !closed) work.await();
+                        }
+                        case INTERVAL -> work.awaitNanos(intervalNanos);
+                        default -> {
+                            while (active.position() < BLOCK_SIZE && !closed) work.await();
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                commit(policy != SyncPolicy.NONE);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // fail every later operation rather than acknowledge writes that never happen
+            lock.lock();
+            try {
+                failure = e;
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Writes the buffered records as one frame and optionally fsyncs them. Records
+    // appended while the write is in progress go into the other buffer and form
+    // the next group.
+    private void commit(boolean force) throws IOException {
+        ioLock.lock();
+        try {
+            ByteBuffer frame = null;
+            long lsn;
+            lock.lock();
+            try {
+                lsn = appendedLsn;
+                if (active.position() > 0) {
+                    frame = active;
+                    active = spare;
+                    spare = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (frame != null) {
+                writeFrame(log, frame);
+                dirty = true;
+            }
+            if (force && dirty) {
+                log.force(false);
+                dirty = false;
+                syncs++;
+            }
+
+            lock.lock();
+            try {
+                if (frame != null) {
+                    frame.clear();
+                    spare = frame;
+                }
+                if (!dirty) {
+                    durableLsn = Math.max(durableLsn, lsn);
+                    durable.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    private static void writeFrame(FileChannel channel, ByteBuffer records) throws IOException {
+        records.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(records.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER);
+        header.putInt(records.remaining()).putInt((int) crc.getValue()).flip();
+        ByteBuffer[] parts = {header, records};
+        while (records.hasRemaining()) {
+            channel.write(parts);
+        }
+    }
+
+    // -----------------------------
+    // snapshots
+    // -----------------------------
+
+    // Rotates the log at an exact record boundary, then writes the heap as it was
+    // at that boundary. Other threads keep going while the snapshot is written.
+    private void snapshot() throws IOException {
+        int[] priorities;
+        T[] items;
+        long gen;
+        long lsn;
+        ioLock.lock();
+        try {
+            ByteBuffer frame = null;
+            lock.lock();
+            try {
+                if (active.position() > 0) {
+                    frame = active;
+                    active = spare;
+                    spare = null;
+                }
+                lsn = appendedLsn;
+                priorities = new int[heap.size()];
+                items = newArray(heap.size());
+                heap.drainTo(priorities, items);
+                heap = new BinaryHeapPriorityQueue<>(priorities, items);
+                sinceSnapshot = 0;
+            } finally {
+                lock.unlock();
+            }
+            if (frame != null) {
+                writeFrame(log, frame);
+            }
+            log.force(false);
+            log.close();
+            dirty = false;
+            syncs++;
+            gen = generation + 1;
+            log = openLog(gen);
+            generation = gen;
+
+            lock.lock();
+            try {
+                if (frame != null) {
+                    frame.clear();
+                    spare = frame;
+                }
+                durableLsn = Math.max(durableLsn, lsn);
+                durable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            ioLock.unlock();
+        }
+
+        writeSnapshot(gen, priorities, items);
+        snapshots++;
+        deleteBefore(gen);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T[] newArray(int n) {
+        return (T[]) new Object[n];
+    }
+
+    private void writeSnapshot(long gen, int[] priorities, T[] items) throws IOException {
+        Path tmp = dir.resolve(String.format("snapshot-%016d.tmp", gen));
+        CRC32C crc = new CRC32C();
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+            block.putInt(SNAPSHOT_MAGIC).putInt(priorities.length);
+            for (int i = 0; i < priorities.length; i++) {
+                while (true) {
+                    int start = block.position();
+                    try {
+                        block.putInt(priorities[i]);
+                        block.putInt(0);
+                        codec.encode(items[i], block);
+                        block.putInt(start + 4, block.position() - start - 8);
+                        break;
+                    } catch (BufferOverflowException e) {
+                        block.position(start);
+                        if (start == 0) {
+                            block = ByteBuffer.allocate(block.capacity() * 2);
+                        } else {
+                            flushBlock(out, block, crc);
+                        }
+                    }
+                }
+            }
+            flushBlock(out, block, crc);
+            block.putInt((int) crc.getValue()).flip();
+            while (block.hasRemaining()) out.write(block);
+            out.force(true);
+        }
+        Files.move(tmp, snapshotPath(gen), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void flushBlock(FileChannel out, ByteBuffer block, CRC32C crc) throws IOException {
+        block.flip();
+        crc.update(block.duplicate());
+        while (block.hasRemaining()) out.write(block);
+        block.clear();
+    }
+
+    // -----------------------------
+    // recovery
+    // -----------------------------
+
+    private void recover() throws IOException {
+        long start = System.nanoTime();
+        List<Long> snapshotGens = new ArrayList<>();
+        List<Long> logGens = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(p); // snapshot that never finished
+                } else if (name.startsWith("snapshot-") && name.endsWith(".bin")) {
+                    snapshotGens.add(parseGen(name));
+                } else if (name.startsWith("wal-") && name.endsWith(".log")) {
+                    logGens.add(parseGen(name));
+                }
+            }
+        }
+        long base = snapshotGens.stream().mapToLong(Long::longValue).max().orElse(0);
+        heap = base > 0 ? readSnapshot(snapshotPath(base)) : new BinaryHeapPriorityQueue<>();
+
+        List<Long> replay = logGens.stream().filter(g -> g >= base).sorted().toList();
+        generation = replay.isEmpty() ? base : replay.get(replay.size() - 1);
+        for (long gen : replay) {
+            replayLog(logPath(gen), gen == generation);
+        }
+        deleteBefore(base);
+
+        log = openLog(generation);
+        log.position(log.size());
+        recoveryNanos = System.nanoTime() - start;
+    }
+
+    private static long parseGen(String name) {
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.indexOf('.')));
+    }
+
+    private BinaryHeapPriorityQueue<T> readSnapshot(Path path) throws IOException {
+        ByteBuffer in = map(path);
+        if (in.limit() < 12 || in.getInt() != SNAPSHOT_MAGIC) {
+            throw new IOException("corrupt snapshot " + path);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(in.duplicate().position(0).limit(in.limit() - 4));
+        if (in.getInt(in.limit() - 4) != (int) crc.getValue()) {
+            throw new IOException("corrupt snapshot " + path);
+        }
+        int n = in.getInt();
+        int[] priorities = new int[n];
+        T[] items = newArray(n);
+        for (int i = 0; i < n; i++) {
+            priorities[i] = in.getInt();
+            int len = in.getInt();
+            items[i] = decode(in, len);
+        }
+        return new BinaryHeapPriorityQueue<>(priorities, items);
+    }
+
+    // Applies every complete frame. A bad frame is only expected at the tail of
+    // the newest log (a crash mid-write); it and anything after it are cut off.
+    private void replayLog(Path path, boolean newest) throws IOException {
+        ByteBuffer in = map(path);
+        CRC32C crc = new CRC32C();
+        int good = 0;
+        while (in.remaining() >= FRAME_HEADER) {
+            int len = in.getInt(good);
+            int sum = in.getInt(good + 4);
+            if (len <= 0 || len > in.limit() - good - FRAME_HEADER) break;
+            ByteBuffer records = in.duplicate().position(good + FRAME_HEADER).limit(good + FRAME_HEADER + len);
+            crc.reset();
+            crc.update(records.duplicate());
+            if ((int) crc.getValue() != sum) break;
+            applyFrame(records, path);
+            good += FRAME_HEADER + len;
+            in.position(good);
+        }
+        if (good < in.limit()) {
+            if (!newest) {
+                throw new IOException("corrupt log " + path + " at offset " + good);
+            }
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                ch.truncate(good);
+            }
+        }
+    }
+
+    private void applyFrame(ByteBuffer records, Path path) throws IOException {
+        while (records.hasRemaining()) {
+            byte type = records.get();
+            if (type == ENQUEUE) {
+                int priority = records.getInt();
+                int len = records.getInt();
+                heap.enqueue(priority, decode(records, len));
+            } else if (type == DEQUEUE) {
+                try {
+                    heap.dequeue();
+                } catch (Exception e) {
+                    throw new IOException("log " + path + " dequeues from an empty queue");
+                }
+            } else {
+                throw new IOException("unknown record type " + type + " in " + path);
+            }
+            recoveredRecords++;
+        }
+    }
+
+    private T decode(ByteBuffer in, int len) {
+        int end = in.position() + len;
+        int limit = in.limit();
+        in.limit(end);
+        T item = codec.decode(in);
+        in.limit(limit).position(end);
+        return item;
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                throw new IOException(path + " is larger than 2 GiB; lower snapshotEvery");
+            }
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    private FileChannel openLog(long gen) throws IOException {
+        return FileChannel.open(logPath(gen), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private void deleteBefore(long gen) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                boolean ours = (name.startsWith("snapshot-") && name.endsWith(".bin"))
+                        || (name.startsWith("wal-") && name.endsWith(".log"));
+                if (ours && parseGen(name) < gen) {
+                    Files.delete(p);
+                }
+            }
+        }
+    }
+
+    private Path logPath(long gen) {
+        return dir.resolve(String.format("wal-%016d.log", gen));
+    }
+
+    private Path snapshotPath(long gen) {
+        return dir.resolve(String.format("snapshot-%016d.bin", gen));
+    }
+}
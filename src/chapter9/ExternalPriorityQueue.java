@@ -0,0 +1,639 @@
+package chapter9;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * External-memory priority queue for more elements than fit in the heap.
+ *
+ * New elements go into an in-memory BinaryHeapPriorityQueue. When it holds
+ * bufferCapacity elements it is drained in priority order into a run file:
+ * length-prefixed records (priority, payload) encoded by a Codec and written
+ * through a FileChannel one block at a time. dequeue merges the in-memory head
+ * with the current head of every run, so only one block per run is resident.
+ *
+ * Once there are more than maxRuns runs, a background thread merges what is
+ * left of the mergeFactor smallest ones into a single run. The merge copies raw
+ * records and uses the same (priority, run id) order as dequeue, so whatever
+ * dequeue took from those runs in the meantime is exactly a prefix of the
+ * merged run and is skipped when the new run is installed. Installation happens on the caller's
+ * thread at the next operation; if compaction falls far behind, spills wait
+ * for it instead of opening ever more files.
+ *
+ * Not thread-safe, like the other queues in this package. close() deletes
+ * every run file.
+ */
+public class ExternalPriorityQueue<T> implements PriorityQueue<T>, AutoCloseable {
+
+    /** Converts elements to and from bytes in a run file. */
+    public interface Codec<T> {
+        /** Writes item at dst's position; may throw BufferOverflowException. */
+        void encode(T item, ByteBuffer dst);
+
+        /** Reads an item from every remaining byte of src. */
+        T decode(ByteBuffer src);
+
+        Codec<Integer> INTEGER = new Codec<>() {
+            public void encode(Integer item, ByteBuffer dst) {
+                dst.putInt(item);
+            }
+
+            public Integer decode(ByteBuffer src) {
+                return src.getInt();
+            }
+        };
+
+        Codec<Long> LONG = new Codec<>() {
+            public void encode(Long item, ByteBuffer dst) {
+                dst.putLong(item);
+            }
+
+            public Long decode(ByteBuffer src) {
+                return src.getLong();
+            }
+        };
+
+        Codec<String> STRING = new Codec<>() {
+            public void encode(String item, ByteBuffer dst) {
+                dst.put(item.getBytes(StandardCharsets.UTF_8));
+            }
+
+            public String decode(ByteBuffer src) {
+                byte[] bytes = new byte[src.remaining()];
+                src.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+        };
+    }
+
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int HEADER = 8; // priority + payload length
+
+    private final Path dir;
+    private final int bufferCapacity;
+    private final int maxRuns;
+    private final int mergeFactor;
+    private final Codec<T> codec;
+
+    private final BinaryHeapPriorityQueue<T> buffer = new BinaryHeapPriorityQueue<>();
+    private final RunHeap heads = new RunHeap();          // non-exhausted runs
+    private final List<Run> files = new ArrayList<>();    // every run file still on disk
+    private final ExecutorService compactor;
+    private Future<Compacted> pending;
+
+    private long nextId;
+    private long size;
+    private long spilledRecords;
+    private long compactions;
+
+    public ExternalPriorityQueue(Path dir, int bufferCapacity, Codec<T> codec) {
+        this(dir, bufferCapacity, codec, 32, 8);
+    }
+
+    /**
+     * @param dir            directory for run files
+     * @param bufferCapacity elements kept in memory before a spill
+     * @param maxRuns        run count that triggers a background compaction
+     * @param mergeFactor    runs merged per compaction
+     */
+    public ExternalPriorityQueue(Path dir, int bufferCapacity, Codec<T> codec, int maxRuns, int mergeFactor) {
+        if (bufferCapacity <= 0 || mergeFactor < 2 || maxRuns < mergeFactor) {
+            throw new IllegalArgumentException("need bufferCapacity > 0 and 2 <= mergeFactor <= maxRuns");
+        }
+        this.dir = dir;
+        this.bufferCapacity = bufferCapacity;
+        this.codec = codec;
+        this.maxRuns = maxRuns;
+        this.mergeFactor = mergeFactor;
+        this.compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "pq-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void enqueue(int priority, T data) {
+        try {
+            installIfDone();
+            buffer.enqueue(priority, data);
+            size++;
+            if (buffer.size() >= bufferCapacity) {
+                spill();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        installIfDone();
+        Run run = bestRun();
+        if (run == null) {
+            if (buffer.isEmpty()) {
+                throw new Exception("PriorityQueue is empty");
+            }
+            size--;
+            return buffer.dequeue();
+        }
+        T result = run.reader.decode(codec);
+        run.consumed++;
+        if (run.consumed < run.count) {
+            run.reader.advance();
+            heads.fixTop();
+        } else {
+            heads.poll();
+            retire(run);
+        }
+        size--;
+        return result;
+    }
+
+    @Override
+    public T front() throws Exception {
+        installIfDone();
+        Run run = bestRun();
+        if (run == null) {
+            if (buffer.isEmpty()) {
+                throw new Exception("PriorityQueue is empty");
+            }
+            return buffer.front();
+        }
+        return run.reader.decode(codec);
+    }
+
+    // The best run head if it beats the in-memory head, otherwise null.
+    private Run bestRun() throws Exception {
+        Run run = heads.peek();
+        if (run == null) {
+            return null;
+        }
+        if (!buffer.isEmpty() && buffer.frontPriority() <= run.reader.priority) {
+            return null;
+        }
+        return run;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /** Exact element count, which may exceed Integer.MAX_VALUE. */
+    public long longSize() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int runCount() {
+        return files.size();
+    }
+
+    public long spilledRecords() {
+        return spilledRecords;
+    }
+
+    public long compactions() {
+        return compactions;
+    }
+
+    /**
+     * Stops background compaction and deletes every run file.
+     */
+    @Override
+    public void close() throws IOException {
+        compactor.shutdownNow();
+        if (pending != null) {
+            try {
+                Files.deleteIfExists(pending.get().path);
+            } catch (Exception ignored) {
+                // cancelled or failed; the task cleans up its own output
+            }
+            pending = null;
+        }
+        for (Run run : files) {
+            run.reader.close();
+            Files.deleteIfExists(run.path);
+        }
+        files.clear();
+        heads.clear();
+    }
+
+    // -----------------------------
+    // spilling and compaction
+    // -----------------------------
+
+    private void spill() throws IOException {
+        if (pending != null && files.size() >= 2 * maxRuns) {
+            // compaction is far behind: wait rather than keep opening files
+            install(await(pending));
+        }
+
+        Path path = Files.createTempFile(dir, "pq-run-", ".bin");
+        long count = 0;
+        try (RunWriter writer = new RunWriter(path)) {
+            while (!buffer.isEmpty()) {
+                int priority = buffer.frontPriority();
+                writer.write(priority, buffer.dequeue(), codec);
+                count++;
+            }
+        } catch (Exception e) {
+            Files.deleteIfExists(path);
+            throw e instanceof IOException io ? io : new IOException(e);
+        }
+        spilledRecords += count;
+        addRun(new Run(nextId++, path, count), 0);
+        maybeCompact();
+    }
+
+    private void maybeCompact() throws IOException {
+        if (pending != null || files.size() <= maxRuns) {
+            return;
+        }
+        // merge the smallest files first, so each record is rewritten about log(n) times
+        List<Run> candidates = new ArrayList<>(files);
+        candidates.sort(Comparator.comparingLong(r -> r.count));
+        List<Run> sources = new ArrayList<>(candidates.subList(0, mergeFactor));
+        long[] offsets = new long[sources.size()];
+        for (int i = 0; i < offsets.length; i++) {
+            Run run = sources.get(i);
+            run.compacting = true;
+            run.snapshot = run.consumed;
+            offsets[i] = run.reader.headOffset();
+        }
+        pending = compactor.submit(() -> merge(sources, offsets));
+    }
+
+    // Runs on the compactor thread. Reads each source from the record that was its
+    // head when the compaction started, through its own channel, and touches only
+    // the final fields of the sources.
+    private Compacted merge(List<Run> sources, long[] offsets) throws IOException {
+        Path path = Files.createTempFile(dir, "pq-run-", ".bin");
+        RunHeap heap = new RunHeap();
+        try (RunWriter writer = new RunWriter(path)) {
+            for (int i = 0; i < offsets.length; i++) {
+                Run src = sources.get(i);
+                Run copy = new Run(src.id, src.path, src.count);
+                copy.reader = new RunReader(src.path, offsets[i]);
+                if (copy.reader.advance()) {
+                    heap.add(copy);
+                } else {
+                    copy.reader.close();
+                }
+            }
+            long count = 0;
+            Run top;
+            while ((top = heap.peek()) != null) {
+                top.reader.copyTo(writer);
+                count++;
+                if (top.reader.advance()) {
+                    heap.fixTop();
+                } else {
+                    heap.poll();
+                    top.reader.close();
+                }
+            }
+            return new Compacted(sources, path, count);
+        } catch (Exception e) {
+            for (Run run : heap.runs()) {
+                run.reader.close();
+            }
+            Files.deleteIfExists(path);
+            throw e instanceof IOException io ? io : new IOException(e);
+        }
+    }
+
+    private void installIfDone() throws IOException {
+        if (pending != null && pending.isDone()) {
+            install(await(pending));
+        }
+    }
+
+    private Compacted await(Future<Compacted> f) throws IOException {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            pending = null;
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for compaction", e);
+        }
+    }
+
+    // Swaps the merged run in for its sources, skipping what was dequeued from them.
+    private void install(Compacted c) throws IOException {
+        pending = null;
+        long consumed = 0;
+        for (Run src : c.sources) {
+            consumed += src.consumed - src.snapshot;
+            src.compacting = false;
+        }
+        heads.removeAll(c.sources);
+        for (Run src : c.sources) {
+            files.remove(src);
+            src.reader.close();
+            Files.deleteIfExists(src.path);
+        }
+        compactions++;
+
+        if (consumed < c.count) {
+            addRun(new Run(nextId++, c.path, c.count), consumed);
+        } else {
+            Files.deleteIfExists(c.path);
+        }
+        maybeCompact();
+    }
+
+    private void addRun(Run run, long skip) throws IOException {
+        run.reader = new RunReader(run.path, 0);
+        files.add(run);
+        for (long i = 0; i <= skip; i++) {
+            if (!run.reader.advance()) {
+                throw new EOFException("run shorter than recorded: " + run.path);
+            }
+        }
+        run.consumed = skip;
+        heads.add(run);
+    }
+
+    // An exhausted run keeps its file while a compaction is still reading it.
+    private void retire(Run run) throws IOException {
+        if (run.compacting) {
+            return;
+        }
+        files.remove(run);
+        run.reader.close();
+        Files.deleteIfExists(run.path);
+    }
+
+    // -----------------------------
+    // runs and their heap
+    // -----------------------------
+
+    private static final class Run {
+        final long id;
+        final Path path;
+        final long count;
+        long consumed;
+        long snapshot; // consumed when the current compaction started
+        boolean compacting;
+        RunReader reader;
+
+        Run(long id, Path path, long count) {
+            this.id = id;
+            this.path = path;
+            this.count = count;
+        }
+    }
+
+    private record Compacted(List<Run> sources, Path path, long count) {
+    }
+
+    // Min-heap of runs by (head priority, run id). The id tie-break makes dequeue
+    // and merge agree on the order of equal priorities.
+    private static final class RunHeap {
+        private Run[] heap = new Run[16];
+        private int n;
+
+        Run peek() {
+            return n == 0 ? null : heap[0];
+        }
+
+        void add(Run run) {
+            if (n == heap.length) {
+                heap = Arrays.copyOf(heap, n * 2);
+            }
+            heap[n] = run;
+            siftUp(n++);
+        }
+
+        Run poll() {
+            Run top = heap[0];
+            heap[0] = heap[--n];
+            heap[n] = null;
+            if (n > 0) {
+                siftDown(0);
+            }
+            return top;
+        }
+
+        void fixTop() {
+            siftDown(0);
+        }
+
+        void removeAll(List<Run> runs) {
+            int kept = 0;
+            for (int i = 0; i < n; i++) {
+                if (!runs.contains(heap[i])) {
+                    heap[kept++] = heap[i];
+                }
+            }
+            Arrays.fill(heap, kept, n, null);
+            n = kept;
+            for (int i = n / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+
+        List<Run> runs() {
+            return Arrays.asList(Arrays.copyOf(heap, n));
+        }
+
+        void clear() {
+            Arrays.fill(heap, 0, n, null);
+            n = 0;
+        }
+
+        private boolean less(Run a, Run b) {
+            int pa = a.reader.priority;
+            int pb = b.reader.priority;
+            return pa < pb || (pa == pb && a.id < b.id);
+        }
+
+        private void siftUp(int i) {
+            Run run = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!less(run, heap[parent])) break;
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = run;
+        }
+
+        private void siftDown(int i) {
+            Run run = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= n) break;
+                if (child + 1 < n && less(heap[child + 1], heap[child])) child++;
+                if (!less(heap[child], run)) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = run;
+        }
+    }
+
+    // -----------------------------
+    // block-buffered run I/O
+    // -----------------------------
+
+    // Writes records into a direct buffer and hands full blocks to the channel.
+    private static final class RunWriter implements AutoCloseable {
+        private final FileChannel channel;
+        private ByteBuffer block = ByteBuffer.allocateDirect(BLOCK_SIZE);
+
+        RunWriter(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        <T> void write(int priority, T item, Codec<T> codec) throws IOException {
+            while (true) {
+                int start = block.position();
+                try {
+                    block.putInt(priority);
+                    block.putInt(0);
+                    codec.encode(item, block);
+                    block.putInt(start + 4, block.position() - start - HEADER);
+                    return;
+                } catch (BufferOverflowException e) {
+                    block.position(start);
+                    if (start == 0) {
+                        // a single record bigger than the block
+                        block = ByteBuffer.allocateDirect(block.capacity() * 2);
+                    } else {
+                        flush();
+                    }
+                }
+            }
+        }
+
+        void writeRaw(int priority, ByteBuffer src, int offset, int length) throws IOException {
+            if (block.remaining() < HEADER + length) {
+                flush();
+                if (block.capacity() < HEADER + length) {
+                    block = ByteBuffer.allocateDirect(HEADER + length);
+                }
+            }
+            block.putInt(priority);
+            block.putInt(length);
+            block.put(block.position(), src, offset, length);
+            block.position(block.position() + length);
+        }
+
+        private void flush() throws IOException {
+            block.flip();
+            while (block.hasRemaining()) {
+                channel.write(block);
+            }
+            block.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    // Reads one block at a time; the current record stays in the block until advance().
+    private static final class RunReader {
+        private final FileChannel channel;
+        private ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE).limit(0);
+        private int start;
+        private int length;
+        int priority;
+
+        RunReader(Path path, long offset) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            channel.position(offset);
+        }
+
+        /** File offset of the current record's header. */
+        long headOffset() throws IOException {
+            return channel.position() - block.limit() + start - HEADER;
+        }
+
+        /** Moves to the next record; false at end of file. */
+        boolean advance() throws IOException {
+            block.position(start + length);
+            start = block.position();
+            length = 0;
+            if (!fill(HEADER)) {
+                start = block.position();
+                return false;
+            }
+            priority = block.getInt();
+            int len = block.getInt();
+            if (!fill(len)) {
+                throw new EOFException("truncated run file");
+            }
+            start = block.position();
+            length = len;
+            return true;
+        }
+
+        <T> T decode(Codec<T> codec) {
+            int limit = block.limit();
+            block.limit(start + length).position(start);
+            T item = codec.decode(block);
+            block.limit(limit).position(start);
+            return item;
+        }
+
+        void copyTo(RunWriter writer) throws IOException {
+            writer.writeRaw(priority, block, start, length);
+        }
+
+        // Makes at least n bytes available from the current position.
+        private boolean fill(int n) throws IOException {
+            if (block.remaining() >= n) {
+                return true;
+            }
+            if (n > block.capacity()) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(n, block.capacity() * 2));
+                bigger.put(block);
+                block = bigger;
+            } else {
+                block.compact();
+            }
+            while (block.position() < n) {
+                if (channel.read(block) < 0) {
+                    break;
+                }
+            }
+            block.flip();
+            return block.remaining() >= n;
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
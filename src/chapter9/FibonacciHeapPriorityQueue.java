@@ -0,0 +1,261 @@
+package chapter9;
+
+/**
+ * Fibonacci heap: a lazy forest of heap-ordered trees in circular root and child lists.
+ *
+ * enqueue, meld and decreaseKey are O(1) amortized; only dequeue does real
+ * work, consolidating roots of equal degree in O(log n) amortized. Nodes
+ * double as handles for decreaseKey.
+ */
+public class FibonacciHeapPriorityQueue<T> implements PriorityQueue<T> {
+
+    // max degree is below log_phi(n) + 1; 46 covers any int-sized heap
+    private static final int MAX_DEGREE = 46;
+
+    /** Handle to an entry, valid until the entry is dequeued. */
+    public static final class Node<T> {
+        private int priority;
+        private final T data;
+        private Node<T> parent;
+        private Node<T> child;
+        private Node<T> left = this;
+        private Node<T> right = this;
+        private int degree;
+        private boolean marked;
+        private boolean removed;
+
+        private Node(int priority, T data) {
+            this.priority = priority;
+            this.data = data;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public T getData() {
+            return data;
+        }
+    }
+
+    private Node<T> min;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    private final Node<T>[] byDegree = (Node<T>[]) new Node[MAX_DEGREE];
+
+    @Override
+    public void enqueue(int priority, T data) {
+        insert(priority, data);
+    }
+
+    /**
+     * Adds an entry and returns its node for use with decreaseKey.
+     */
+    public Node<T> insert(int priority, T data) {
+        Node<T> n = new Node<>(priority, data);
+        min = mergeLists(min, n);
+        size++;
+        return n;
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        Node<T> z = min;
+
+        // promote z's children to roots
+        Node<T> c = z.child;
+        if (c != null) {
+            Node<T> x = c;
+            do {
+                x.parent = null;
+                x.marked = false;
+                x = x.right;
+            } while (x != c);
+            z.child = null;
+            mergeLists(z, c);
+        }
+
+        if (z.right == z) {
+            min = null;
+        } else {
+            min = z.right;
+            unlink(z);
+            consolidate();
+        }
+
+        z.left = z;
+        z.right = z;
+        z.removed = true;
+        size--;
+        return z.data;
+    }
+
+    @Override
+    public T front() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return min.data;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Lowers the node's priority number (raises its priority).
+     *
+     * The node must belong to this queue (directly or through meld).
+     *
+     * @throws IllegalArgumentException if p is larger than the current priority
+     *                                  or the node has already been dequeued
+     */
+    public void decreaseKey(Node<T> node, int p) {
+        if (node.removed) {
+            throw new IllegalArgumentException("node has already been dequeued");
+        }
+        if (p > node.priority) {
+            throw new IllegalArgumentException("new priority " + p + " is larger than " + node.priority);
+        }
+        node.priority = p;
+
+        Node<T> parent = node.parent;
+        if (parent != null && node.priority < parent.priority) {
+            cut(node, parent);
+            cascadingCut(parent);
+        }
+        if (node.priority < min.priority) {
+            min = node;
+        }
+    }
+
+    /**
+     * Moves every entry of other into this queue in O(1). other is left empty.
+     * Nodes from other remain valid handles, now for this queue.
+     */
+    public void meld(FibonacciHeapPriorityQueue<T> other) {
+        if (other == this || other.min == null) {
+            return;
+        }
+        Node<T> otherMin = other.min;
+        mergeLists(min, otherMin);
+        if (min == null || otherMin.priority < min.priority) {
+            min = otherMin;
+        }
+        size += other.size;
+        other.min = null;
+        other.size = 0;
+    }
+
+    // Splices two circular lists together; returns the one with the smaller root.
+    private Node<T> mergeLists(Node<T> a, Node<T> b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        Node<T> aRight = a.right;
+        Node<T> bLeft = b.left;
+        a.right = b;
+        b.left = a;
+        aRight.left = bLeft;
+        bLeft.right = aRight;
+        return b.priority < a.priority ? b : a;
+    }
+
+    private void unlink(Node<T> x) {
+        x.left.right = x.right;
+        x.right.left = x.left;
+        x.left = x;
+        x.right = x;
+    }
+
+    private void consolidate() {
+        // count roots first, the list is rewired while we walk it
+        int roots = 0;
+        Node<T> x = min;
+        do {
+            roots++;
+            x = x.right;
+        } while (x != min);
+
+        Node<T> next = min;
+        for (int i = 0; i < roots; i++) {
+            Node<T> w = next;
+            next = next.right;
+
+            int d = w.degree;
+            while (byDegree[d] != null) {
+                Node<T> y = byDegree[d];
+                if (y.priority < w.priority) {
+                    Node<T> tmp = w;
+                    w = y;
+                    y = tmp;
+                }
+                makeChild(y, w);
+                byDegree[d] = null;
+                d++;
+            }
+            byDegree[d] = w;
+        }
+
+        // rebuild the root list from the degree table
+        min = null;
+        for (int d = 0; d < MAX_DEGREE; d++) {
+            Node<T> r = byDegree[d];
+            if (r != null) {
+                byDegree[d] = null;
+                r.left = r;
+                r.right = r;
+                min = mergeLists(min, r);
+            }
+        }
+    }
+
+    private void makeChild(Node<T> y, Node<T> x) {
+        unlink(y);
+        y.parent = x;
+        if (x.child == null) {
+            x.child = y;
+        } else {
+            mergeLists(x.child, y);
+        }
+        x.degree++;
+        y.marked = false;
+    }
+
+    private void cut(Node<T> x, Node<T> parent) {
+        if (x.right == x) {
+            parent.child = null;
+        } else {
+            if (parent.child == x) {
+                parent.child = x.right;
+            }
+            unlink(x);
+        }
+        parent.degree--;
+        x.parent = null;
+        x.marked = false;
+        mergeLists(min, x);
+    }
+
+    private void cascadingCut(Node<T> y) {
+        Node<T> parent = y.parent;
+        while (parent != null) {
+            if (!y.marked) {
+                y.marked = true;
+                return;
+            }
+            cut(y, parent);
+            y = parent;
+            parent = y.parent;
+        }
+    }
+}
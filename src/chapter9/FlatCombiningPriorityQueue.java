@@ -0,0 +1,168 @@
+package chapter9;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe BinaryHeapPriorityQueue using flat combining.
+ *
+ * Each thread publishes its request in its own slot. Whichever thread wins the
+ * combiner lock walks every slot and applies all pending requests to the heap
+ * in one pass, so the heap stays in that core's cache instead of bouncing
+ * between threads. The other threads spin briefly on their own slot and only
+ * try for the lock again (after yielding) if nobody served them.
+ *
+ * Every CLEANUP_EVERY passes the combiner unlinks slots that have not had a
+ * request for MAX_IDLE passes, so threads that come and go (virtual threads,
+ * pools that shrink) do not leave the list growing. A thread whose slot was
+ * dropped links it back in on its next request.
+ */
+public class FlatCombiningPriorityQueue<T> implements PriorityQueue<T> {
+
+    private static final int OP_ENQUEUE = 1;
+    private static final int OP_DEQUEUE = 2;
+    private static final int OP_FRONT = 3;
+
+    // how many times a waiting thread checks its slot before retrying the lock
+    private static final int SPINS = 256;
+
+    // idle slot cleanup, counted in combining passes
+    private static final int CLEANUP_EVERY = 64;
+    private static final int MAX_IDLE = 1024;
+
+    private static final class Slot {
+        int op;
+        int priority;
+        Object data;
+        Object result;
+        Exception error;
+        volatile boolean pending;
+        volatile boolean active; // on the publication list; cleared by the combiner after unlinking
+        int lastUsed;            // combiner pass that last served this slot
+        Slot next;               // publication list, written before the slot is (re)published
+    }
+
+    private final BinaryHeapPriorityQueue<T> heap = new BinaryHeapPriorityQueue<>();
+    private final ReentrantLock combiner = new ReentrantLock();
+    private final AtomicReference<Slot> slots = new AtomicReference<>();
+    private final ThreadLocal<Slot> mySlot = ThreadLocal.withInitial(this::register);
+    private volatile int size;
+    private int passes; // guarded by combiner
+
+    private Slot register() {
+        Slot s = new Slot();
+        link(s);
+        return s;
+    }
+
+    private void link(Slot s) {
+        s.active = true;
+        Slot head;
+        do {
+            head = slots.get();
+            s.next = head;
+        } while (!slots.compareAndSet(head, s));
+    }
+
+    @Override
+    public void enqueue(int priority, T data) {
+        Slot s = mySlot.get();
+        s.priority = priority;
+        s.data = data;
+        try {
+            submit(s, OP_ENQUEUE);
+        } catch (Exception ex) {
+            // enqueue never fails on the underlying heap
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        return submit(mySlot.get(), OP_DEQUEUE);
+    }
+
+    @Override
+    public T front() throws Exception {
+        return submit(mySlot.get(), OP_FRONT);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T submit(Slot s, int op) throws Exception {
+        s.op = op;
+        s.pending = true; // volatile write publishes op/priority/data
+
+        while (true) {
+            // checked on every round: the combiner may drop the slot just as we publish
+            if (!s.active) link(s);
+            if (combiner.tryLock()) {
+                try {
+                    combine();
+                } finally {
+                    combiner.unlock();
+                }
+            } else {
+                for (int i = 0; i < SPINS && s.pending; i++) {
+                    Thread.onSpinWait();
+                }
+                // the combiner may be descheduled; give it the core back
+                if (s.pending) Thread.yield();
+            }
+
+            if (!s.pending) {
+                Object result = s.result;
+                Exception error = s.error;
+                s.data = null;
+                s.result = null;
+                s.error = null;
+                if (error != null) throw error;
+                return (T) result;
+            }
+        }
+    }
+
+    // Called with the combiner lock held. Only the combiner unlinks, and never
+    // the head, so it does not race with threads pushing new slots there.
+    @SuppressWarnings("unchecked")
+    private void combine() {
+        passes++;
+        boolean cleanup = passes % CLEANUP_EVERY == 0;
+        Slot prev = null;
+        for (Slot s = slots.get(), next; s != null; s = next) {
+            next = s.next;
+            if (!s.pending) {
+                if (cleanup && prev != null && passes - s.lastUsed > MAX_IDLE) {
+                    prev.next = next;
+                    s.active = false; // after the unlink, so the owner cannot relink it twice
+                } else {
+                    prev = s;
+                }
+                continue;
+            }
+            prev = s;
+            s.lastUsed = passes;
+            try {
+                switch (s.op) {
+                    case OP_ENQUEUE -> heap.enqueue(s.priority, (T) s.data);
+                    case OP_DEQUEUE -> s.result = heap.dequeue();
+                    case OP_FRONT -> s.result = heap.front();
+                    default -> throw new IllegalStateException("Unknown op " + s.op);
+                }
+            } catch (Exception ex) {
+                s.error = ex;
+            }
+            s.pending = false; // volatile write hands result back to the owner
+        }
+        size = heap.size();
+    }
+}
@@ -0,0 +1,243 @@
+package chapter9;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Binary heap whose entries can be reprioritized or removed after insertion.
+ *
+ * insert() returns a handle: the index of the slot that holds the entry's
+ * priority, data and current heap position. The heap itself is an int[] of
+ * slot indices, so changePriority, remove and contains run in O(log n) (or
+ * O(1) for contains) with no tombstones left behind.
+ *
+ * A handle is valid from insert() until its entry is dequeued or removed.
+ * After that its slot is recycled, so a stale handle may refer to a newer entry.
+ */
+public class IndexedHeapPriorityQueue<T> implements PriorityQueue<T> {
+
+    private static final int NOT_IN_HEAP = -1;
+
+    // per-slot state, indexed by handle
+    private int[] priority;
+    private Object[] data;
+    private int[] pos;      // heap index of the slot, or NOT_IN_HEAP
+
+    private int[] heap;     // heap of slot indices
+    private int size;
+
+    // recycled slots, used as a stack
+    private int[] free;
+    private int freeCount;
+    private int slotsUsed;  // slots ever handed out
+
+    public IndexedHeapPriorityQueue() {
+        this(16);
+    }
+
+    public IndexedHeapPriorityQueue(int initialCapacity) {
+        int cap = Math.max(1, initialCapacity);
+        priority = new int[cap];
+        data = new Object[cap];
+        pos = new int[cap];
+        heap = new int[cap];
+        free = new int[cap];
+    }
+
+    @Override
+    public void enqueue(int priority, T data) {
+        insert(priority, data);
+    }
+
+    /**
+     * Adds an entry and returns its handle.
+     */
+    public int insert(int p, T d) {
+        int slot = allocSlot();
+        priority[slot] = p;
+        data[slot] = d;
+        heap[size] = slot;
+        pos[slot] = size;
+        size++;
+        siftUp(size - 1);
+        return slot;
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return removeAt(0);
+    }
+
+    @Override
+    public T front() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return dataAt(heap[0]);
+    }
+
+    /**
+     * Handle of the highest priority entry.
+     */
+    public int frontHandle() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return heap[0];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int handle) {
+        return handle >= 0 && handle < slotsUsed && pos[handle] != NOT_IN_HEAP;
+    }
+
+    public int priorityOf(int handle) {
+        checkHandle(handle);
+        return priority[handle];
+    }
+
+    public T get(int handle) {
+        checkHandle(handle);
+        return dataAt(handle);
+    }
+
+    /**
+     * Moves the entry to its new priority, sifting up or down as needed.
+     */
+    public void changePriority(int handle, int p) {
+        checkHandle(handle);
+        int old = priority[handle];
+        priority[handle] = p;
+        if (p < old) {
+            siftUp(pos[handle]);
+        } else if (p > old) {
+            siftDown(pos[handle]);
+        }
+    }
+
+    /**
+     * Lowers the entry's priority number (raises its priority). Does nothing if
+     * p is not smaller than the current priority, which is what Dijkstra-style
+     * relaxation wants.
+     *
+     * @return true if the priority changed
+     */
+    public boolean decreaseKey(int handle, int p) {
+        checkHandle(handle);
+        if (p >= priority[handle]) {
+            return false;
+        }
+        priority[handle] = p;
+        siftUp(pos[handle]);
+        return true;
+    }
+
+    /**
+     * Removes the entry and returns its data.
+     */
+    public T remove(int handle) {
+        checkHandle(handle);
+        return removeAt(pos[handle]);
+    }
+
+    private T removeAt(int i) {
+        int slot = heap[i];
+        T result = dataAt(slot);
+
+        size--;
+        if (i != size) {
+            int moved = heap[size];
+            heap[i] = moved;
+            pos[moved] = i;
+            // the moved entry may belong above or below i
+            siftDown(i);
+            if (heap[i] == moved) {
+                siftUp(i);
+            }
+        }
+
+        pos[slot] = NOT_IN_HEAP;
+        data[slot] = null;
+        free[freeCount++] = slot;
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T dataAt(int slot) {
+        return (T) data[slot];
+    }
+
+    private void checkHandle(int handle) {
+        if (!contains(handle)) {
+            throw new NoSuchElementException("No entry for handle " + handle);
+        }
+    }
+
+    private int allocSlot() {
+        if (freeCount > 0) {
+            return free[--freeCount];
+        }
+        if (slotsUsed == priority.length) {
+            int cap = priority.length * 2;
+            priority = Arrays.copyOf(priority, cap);
+            data = Arrays.copyOf(data, cap);
+            pos = Arrays.copyOf(pos, cap);
+            heap = Arrays.copyOf(heap, cap);
+            free = Arrays.copyOf(free, cap);
+        }
+        return slotsUsed++;
+    }
+
+    private void siftUp(int i) {
+        int slot = heap[i];
+        int p = priority[slot];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            int ps = heap[parent];
+            if (p >= priority[ps]) {
+                break;
+            }
+            heap[i] = ps;
+            pos[ps] = i;
+            i = parent;
+        }
+        heap[i] = slot;
+        pos[slot] = i;
+    }
+
+    private void siftDown(int i) {
+        int slot = heap[i];
+        int p = priority[slot];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            int right = child + 1;
+            if (right < size && priority[heap[right]] < priority[heap[child]]) {
+                child = right;
+            }
+            int cs = heap[child];
+            if (p <= priority[cs]) {
+                break;
+            }
+            heap[i] = cs;
+            pos[cs] = i;
+            i = child;
+        }
+        heap[i] = slot;
+        pos[slot] = i;
+    }
+}
@@ -0,0 +1,126 @@
+package chapter9;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap stored as two parallel arrays instead of an array of Entry objects.
+ *
+ * Priorities live in a contiguous int[] so comparisons never chase a pointer,
+ * and enqueue allocates nothing once the arrays have grown to the working size.
+ * Sifting moves a hole down (or up) and writes the displaced element once at
+ * the end instead of swapping at every level.
+ */
+public class IntKeyHeapPriorityQueue<T> implements PriorityQueue<T> {
+
+    private int[] priorities;
+    private Object[] items;
+    private int size;
+
+    public IntKeyHeapPriorityQueue() {
+        this(16);
+    }
+
+    public IntKeyHeapPriorityQueue(int initialCapacity) {
+        int cap = Math.max(1, initialCapacity);
+        this.priorities = new int[cap];
+        this.items = new Object[cap];
+        this.size = 0;
+    }
+
+    @Override
+    public void enqueue(int priority, T data) {
+        ensureCapacity(size + 1);
+        siftUp(size, priority, data);
+        size++;
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+
+        T result = itemAt(0);
+
+        size--;
+        int lastPriority = priorities[size];
+        Object lastItem = items[size];
+        items[size] = null;
+
+        if (size > 0) {
+            siftDown(0, lastPriority, lastItem);
+        }
+
+        return result;
+    }
+
+    @Override
+    public T front() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return itemAt(0);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int i) {
+        return (T) items[i];
+    }
+
+    // Moves the hole at i up until priority fits, then fills it.
+    private void siftUp(int i, int priority, Object item) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            int pp = priorities[parent];
+            if (priority >= pp) {
+                break;
+            }
+            priorities[i] = pp;
+            items[i] = items[parent];
+            i = parent;
+        }
+        priorities[i] = priority;
+        items[i] = item;
+    }
+
+    // Moves the hole at i down until priority fits, then fills it.
+    private void siftDown(int i, int priority, Object item) {
+        int half = size >>> 1; // nodes at or past half are leaves
+        while (i < half) {
+            int child = 2 * i + 1;
+            int cp = priorities[child];
+            int right = child + 1;
+            if (right < size && priorities[right] < cp) {
+                child = right;
+                cp = priorities[right];
+            }
+            if (priority <= cp) {
+                break;
+            }
+            priorities[i] = cp;
+            items[i] = items[child];
+            i = child;
+        }
+        priorities[i] = priority;
+        items[i] = item;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= priorities.length) {
+            return;
+        }
+        int newCap = priorities.length * 2;
+        priorities = Arrays.copyOf(priorities, newCap);
+        items = Arrays.copyOf(items, newCap);
+    }
+}
@@ -0,0 +1,391 @@
+package chapter9;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Merges k sorted sources with a loser tree (tournament tree).
+ *
+ * The tree keeps, at every internal node, the source that lost the match
+ * played there, and the overall winner at the root. After the winner's value
+ * is emitted, only that source's next value has to replay its matches on the
+ * way back up, which is one comparison per level: log2(k) per element, where a
+ * binary heap needs about two per level for its sift-down.
+ *
+ * Leaves sit at nodes k..2k-1 of an implicit tree and node i's parent is i/2,
+ * so k does not have to be a power of two. Ties go to the lower-numbered
+ * source, so the merge is stable. With distinct set, values equal to the one
+ * just emitted are skipped.
+ *
+ * The generic merger is an Iterator over Iterator sources. IntMerger is the
+ * primitive path over int[] arrays and IntSource blocks (for example
+ * memory-mapped int files); it never boxes.
+ */
+public class KWayMerger<T> implements Iterator<T> {
+
+    private final Comparator<? super T> comparator;
+    private final boolean distinct;
+    private final Iterator<? extends T>[] sources;
+    private final Object[] heads;
+    private final boolean[] exhausted;
+    private final int[] tree; // tree[0] = winner, tree[1..k-1] = losers
+    private final int k;
+
+    public KWayMerger(List<? extends Iterator<? extends T>> sources, Comparator<? super T> comparator) {
+        this(sources, comparator, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    public KWayMerger(List<? extends Iterator<? extends T>> sources, Comparator<? super T> comparator,
+                      boolean distinct) {
+        this.comparator = comparator;
+        this.distinct = distinct;
+        // an empty merge is one leaf that starts out exhausted
+        this.k = Math.max(1, sources.size());
+        this.sources = (Iterator<? extends T>[]) new Iterator[k];
+        this.heads = new Object[k];
+        this.exhausted = new boolean[k];
+        this.tree = new int[k];
+
+        for (int i = 0; i < k; i++) {
+            this.sources[i] = i < sources.size() ? sources.get(i) : null;
+            advance(i);
+        }
+        build();
+    }
+
+    /** Merges Comparable items by their natural order. */
+    public static <T extends Comparable<? super T>> KWayMerger<T> naturalOrder(
+            List<? extends Iterator<? extends T>> sources, boolean distinct) {
+        return new KWayMerger<>(sources, Comparator.naturalOrder(), distinct);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !exhausted[tree[0]];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T next() {
+        int w = tree[0];
+        if (exhausted[w]) {
+            throw new NoSuchElementException();
+        }
+        T result = (T) heads[w];
+        advance(w);
+        replay(w);
+        if (distinct) {
+            while (!exhausted[tree[0]] && comparator.compare((T) heads[tree[0]], result) == 0) {
+                w = tree[0];
+                advance(w);
+                replay(w);
+            }
+        }
+        return result;
+    }
+
+    private void advance(int i) {
+        Iterator<? extends T> src = sources[i];
+        if (src != null && src.hasNext()) {
+            heads[i] = src.next();
+        } else {
+            heads[i] = null;
+            exhausted[i] = true;
+        }
+    }
+
+    // true if source a's head comes before source b's
+    @SuppressWarnings("unchecked")
+    private boolean before(int a, int b) {
+        if (exhausted[a]) return false;
+        if (exhausted[b]) return true;
+        int c = comparator.compare((T) heads[a], (T) heads[b]);
+        return c < 0 || (c == 0 && a < b);
+    }
+
+    private void build() {
+        int[] winners = new int[2 * k];
+        for (int i = 0; i < k; i++) {
+            winners[k + i] = i;
+        }
+        for (int node = k - 1; node > 0; node--) {
+            int a = winners[2 * node];
+            int b = winners[2 * node + 1];
+            if (before(a, b)) {
+                winners[node] = a;
+                tree[node] = b;
+            } else {
+                winners[node] = b;
+                tree[node] = a;
+            }
+        }
+        tree[0] = k == 1 ? 0 : winners[1];
+    }
+
+    // Plays source w's new head against the losers on its path to the root.
+    private void replay(int w) {
+        for (int node = (w + k) >>> 1; node > 0; node >>>= 1) {
+            int loser = tree[node];
+            if (before(loser, w)) {
+                tree[node] = w;
+                w = loser;
+            }
+        }
+        tree[0] = w;
+    }
+
+    // -----------------------------
+    // primitive int path
+    // -----------------------------
+
+    /** Merges sorted int arrays into a new array. */
+    public static int[] merge(int[]... arrays) {
+        return mergeArrays(arrays, false);
+    }
+
+    /** Merges sorted int arrays into a new array, keeping one copy of each value. */
+    public static int[] mergeDistinct(int[]... arrays) {
+        return mergeArrays(arrays, true);
+    }
+
+    private static int[] mergeArrays(int[][] arrays, boolean distinct) {
+        long total = 0;
+        IntSource[] sources = new IntSource[arrays.length];
+        for (int i = 0; i < arrays.length; i++) {
+            total += arrays[i].length;
+            sources[i] = IntSource.of(arrays[i]);
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("merged length " + total + " does not fit in an array");
+        }
+        int[] out = new int[(int) total];
+        int n = new IntMerger(sources, distinct).read(out, 0, out.length);
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    /**
+     * A sorted stream of ints handed to the merger a block at a time.
+     */
+    public interface IntSource {
+        /** Fills buf with the next values and returns how many, or 0 at the end. */
+        int fill(int[] buf);
+
+        /** Source over a whole sorted array; IntMerger reads it in place. */
+        static IntSource of(int[] values) {
+            return new ArraySource(values);
+        }
+
+        /**
+         * Source over a file of sorted big-endian ints, as written by
+         * DataOutputStream.writeInt, read through a memory mapping.
+         */
+        static IntSource mapped(Path file) throws IOException {
+            return new MappedSource(file, ByteOrder.BIG_ENDIAN);
+        }
+
+        static IntSource mapped(Path file, ByteOrder order) throws IOException {
+            return new MappedSource(file, order);
+        }
+    }
+
+    private static final class ArraySource implements IntSource {
+        final int[] values;
+        private int next;
+
+        ArraySource(int[] values) {
+            this.values = values;
+        }
+
+        // only used when the source is read outside IntMerger
+        @Override
+        public int fill(int[] buf) {
+            int n = Math.min(buf.length, values.length - next);
+            System.arraycopy(values, next, buf, 0, n);
+            next += n;
+            return n;
+        }
+    }
+
+    // Maps the file in windows of at most MAX_WINDOW bytes, so files over 2 GiB work.
+    private static final class MappedSource implements IntSource {
+        private static final long MAX_WINDOW = 1L << 30;
+
+        private final FileChannel channel;
+        private final ByteOrder order;
+        private final long length;
+        private long mappedEnd;
+        private IntBuffer window;
+
+        MappedSource(Path file, ByteOrder order) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.order = order;
+            this.length = channel.size();
+            if (length % Integer.BYTES != 0) {
+                channel.close();
+                throw new IOException(file + " is " + length + " bytes, not a whole number of ints");
+            }
+        }
+
+        @Override
+        public int fill(int[] buf) {
+            try {
+                if (window == null || !window.hasRemaining()) {
+                    if (mappedEnd == length) {
+                        channel.close();
+                        return 0;
+                    }
+                    long size = Math.min(MAX_WINDOW, length - mappedEnd);
+                    window = channel.map(FileChannel.MapMode.READ_ONLY, mappedEnd, size).order(order).asIntBuffer();
+                    mappedEnd += size;
+                }
+                int n = Math.min(buf.length, window.remaining());
+                window.get(buf, 0, n);
+                return n;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Loser-tree merge of IntSources without boxing. Array sources are read in
+     * place; every other source gets a buffer of BLOCK ints.
+     *
+     * Each tree node holds one long: the value in the high 32 bits and the
+     * source index in the low 32. A plain long comparison then orders by
+     * value and breaks ties by index, and a replay step is a min/max pair
+     * with no data-dependent branch and no lookup into a separate key array.
+     */
+    public static final class IntMerger implements PrimitiveIterator.OfInt {
+        private static final int BLOCK = 1024;
+        // an exhausted source's entry: above every packed (value, index)
+        private static final long DONE = Long.MAX_VALUE;
+
+        private final IntSource[] sources;
+        private final int[][] blocks;
+        private final int[] pos;
+        private final int[] limit;
+        private final long[] tree; // tree[0] = winner, tree[1..k-1] = losers
+        private final int k;
+        private final boolean distinct;
+
+        public IntMerger(IntSource[] sources, boolean distinct) {
+            this.k = Math.max(1, sources.length);
+            this.distinct = distinct;
+            this.sources = new IntSource[k];
+            this.blocks = new int[k][];
+            this.pos = new int[k];
+            this.limit = new int[k];
+            this.tree = new long[k];
+
+            long[] winners = new long[2 * k];
+            for (int i = 0; i < k; i++) {
+                IntSource src = i < sources.length ? sources[i] : null;
+                if (src instanceof ArraySource a) {
+                    // the array is the only block; no copy
+                    blocks[i] = a.values;
+                    limit[i] = a.values.length;
+                } else {
+                    this.sources[i] = src;
+                    blocks[i] = src == null ? new int[0] : new int[BLOCK];
+                }
+                winners[k + i] = advance(i);
+            }
+            for (int node = k - 1; node > 0; node--) {
+                long a = winners[2 * node];
+                long b = winners[2 * node + 1];
+                winners[node] = Math.min(a, b);
+                tree[node] = Math.max(a, b);
+            }
+            tree[0] = winners[1];
+        }
+
+        public IntMerger(List<IntSource> sources, boolean distinct) {
+            this(sources.toArray(new IntSource[0]), distinct);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return tree[0] != DONE;
+        }
+
+        @Override
+        public int nextInt() {
+            long w = tree[0];
+            if (w == DONE) {
+                throw new NoSuchElementException();
+            }
+            pop(w);
+            int v = (int) (w >> 32);
+            if (distinct) {
+                skip(v);
+            }
+            return v;
+        }
+
+        /** Writes up to max merged values into dst from off and returns how many. */
+        public int read(int[] dst, int off, int max) {
+            int n = 0;
+            while (n < max) {
+                long w = tree[0];
+                if (w == DONE) break;
+                pop(w);
+                int v = (int) (w >> 32);
+                dst[off + n++] = v;
+                if (distinct) {
+                    skip(v);
+                }
+            }
+            return n;
+        }
+
+        // drops every remaining copy of v; they are all at the front by now
+        private void skip(int v) {
+            long w;
+            while ((w = tree[0]) != DONE && (int) (w >> 32) == v) {
+                pop(w);
+            }
+        }
+
+        // Replaces the winner w with its source's next value and replays that
+        // source's matches up to the root.
+        private void pop(long w) {
+            int src = (int) w;
+            long e = advance(src);
+            for (int node = (src + k) >>> 1; node > 0; node >>>= 1) {
+                long l = tree[node];
+                tree[node] = Math.max(l, e);
+                e = Math.min(l, e);
+            }
+            tree[0] = e;
+        }
+
+        // Packed entry for source i's next value, or DONE.
+        private long advance(int i) {
+            if (pos[i] == limit[i]) {
+                IntSource src = sources[i];
+                int n = src == null ? 0 : src.fill(blocks[i]);
+                if (n == 0) {
+                    sources[i] = null;
+                    pos[i] = limit[i] = 0;
+                    return DONE;
+                }
+                pos[i] = 0;
+                limit[i] = n;
+            }
+            return ((long) blocks[i][pos[i]++] << 32) | i;
+        }
+    }
+}
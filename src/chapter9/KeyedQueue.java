@@ -0,0 +1,234 @@
+package chapter9;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Per-key FIFO lanes processed in parallel across keys.
+ *
+ * Items with the same key are handed to the handler in enqueue order and never
+ * by two workers at once. Items with different keys run concurrently on the
+ * worker pool. A lane is created on the first enqueue for its key and dropped
+ * again as soon as it drains, so idle keys cost nothing.
+ */
+public class KeyedQueue<K, T> implements AutoCloseable {
+
+    private static final int DEFAULT_BATCH = 32;
+
+    private final class Lane implements Runnable {
+        final K key;
+        final DLinkedListQueue<T> items = new DLinkedListQueue<>();
+        boolean scheduled; // guarded by the lanes map bin for key
+
+        Lane(K key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            drainLane(this);
+        }
+    }
+
+    private final ConcurrentHashMap<K, Lane> lanes = new ConcurrentHashMap<>();
+    private final BiConsumer<? super K, ? super T> handler;
+    private final ExecutorService workers;
+    private final boolean ownsWorkers;
+    private final int batchSize;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final Object drained = new Object();
+    private volatile boolean closed;
+
+    public KeyedQueue(int workerCount, BiConsumer<? super K, ? super T> handler) {
+        this(Executors.newFixedThreadPool(workerCount), true, DEFAULT_BATCH, handler);
+    }
+
+    /**
+     * @param workers   pool the lanes are scheduled on; not shut down by close()
+     * @param batchSize max items a worker takes from one lane before yielding it
+     */
+    public KeyedQueue(ExecutorService workers, int batchSize, BiConsumer<? super K, ? super T> handler) {
+        this(workers, false, batchSize, handler);
+    }
+
+    private KeyedQueue(ExecutorService workers, boolean ownsWorkers, int batchSize,
+                       BiConsumer<? super K, ? super T> handler) {
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+        this.workers = workers;
+        this.ownsWorkers = ownsWorkers;
+        this.batchSize = batchSize;
+        this.handler = handler;
+    }
+
+    /**
+     * @throws IllegalStateException      if the queue is closed
+     * @throws RejectedExecutionException if the worker pool refused the lane;
+     *                                    the items queued for key are dropped
+     */
+    public void enqueue(K key, T item) {
+        // count the item before checking closed: close() then either sees it
+        // in pending or this enqueue sees closed, never neither
+        pending.incrementAndGet();
+        if (closed) {
+            handled(1);
+            throw new IllegalStateException("KeyedQueue is closed");
+        }
+
+        // compute() serializes with the reclaim step in drainLane for the same key,
+        // so an item can never land in a lane that has just been dropped
+        boolean[] schedule = new boolean[1];
+        Lane lane = lanes.compute(key, (k, l) -> {
+            if (l == null) l = new Lane(k);
+            synchronized (l) {
+                l.items.enqueue(item);
+                if (!l.scheduled) {
+                    l.scheduled = true;
+                    schedule[0] = true;
+                }
+            }
+            return l;
+        });
+
+        if (schedule[0]) execute(lane);
+    }
+
+    /** Number of items enqueued but not yet handled. */
+    public long size() {
+        return pending.get();
+    }
+
+    public boolean isEmpty() {
+        return pending.get() == 0;
+    }
+
+    /** Number of keys that currently have a lane. */
+    public int activeKeys() {
+        return lanes.size();
+    }
+
+    /** Blocks until every enqueued item has been handled. */
+    public void awaitDrained() throws InterruptedException {
+        synchronized (drained) {
+            while (pending.get() != 0) drained.wait();
+        }
+    }
+
+    /**
+     * Rejects further enqueues and blocks until the lanes have drained and, if
+     * the pool was created by this queue, it has terminated. If the calling
+     * thread is interrupted while waiting, close() returns early with the
+     * interrupt flag set; the remaining items are still handled and
+     * awaitTermination can be used to wait for them.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Blocks until every enqueued item has been handled and, if the pool was
+     * created by this queue, it has been shut down and terminated, or until
+     * the timeout elapses. Meant to be called after close().
+     *
+     * @return true if everything finished, false if the timeout elapsed first
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (drained) {
+            while (pending.get() != 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                TimeUnit.NANOSECONDS.timedWait(drained, remaining);
+            }
+        }
+        if (!ownsWorkers) return true;
+        // only now: a drained lane no longer resubmits itself, so shutdown rejects nothing
+        workers.shutdown();
+        return workers.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    private void drainLane(Lane lane) {
+        @SuppressWarnings("unchecked")
+        T[] batch = (T[]) new Object[batchSize];
+        int n = 0;
+        synchronized (lane) {
+            try {
+                while (n < batchSize && !lane.items.isEmpty()) batch[n++] = lane.items.dequeue();
+            } catch (Exception ex) {
+                // cannot happen: we only dequeue while the lane is non-empty
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        // the bookkeeping runs even if a handler throws an Error; otherwise the
+        // lane would stay scheduled forever and pending would never reach zero.
+        // Items after the failing one in this batch are dropped with it.
+        try {
+            for (int i = 0; i < n; i++) {
+                try {
+                    handler.accept(lane.key, batch[i]);
+                } catch (RuntimeException ex) {
+                    // one bad item must not stall the rest of its lane
+                    Thread t = Thread.currentThread();
+                    t.getUncaughtExceptionHandler().uncaughtException(t, ex);
+                }
+            }
+        } finally {
+            boolean[] again = new boolean[1];
+            lanes.computeIfPresent(lane.key, (k, l) -> {
+                synchronized (l) {
+                    if (l.items.isEmpty()) {
+                        l.scheduled = false;
+                        return null; // reclaim idle lane
+                    }
+                    again[0] = true;
+                    return l;
+                }
+            });
+
+            handled(n);
+
+            // resubmit rather than loop so other keys get a turn on this worker
+            if (again[0]) execute(lane);
+        }
+    }
+
+    private void execute(Lane lane) {
+        try {
+            workers.execute(lane);
+        } catch (RejectedExecutionException ex) {
+            // nobody will drain the lane: drop it so its key can be scheduled
+            // again and its items stop counting as pending
+            int[] dropped = new int[1];
+            lanes.computeIfPresent(lane.key, (k, l) -> {
+                if (l != lane) return l;
+                synchronized (l) {
+                    dropped[0] = l.items.size();
+                    l.scheduled = false;
+                }
+                return null;
+            });
+            handled(dropped[0]);
+            throw ex;
+        }
+    }
+
+    private void handled(int n) {
+        if (n > 0 && pending.addAndGet(-n) == 0) {
+            synchronized (drained) {
+                drained.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package chapter9;
+
+import java.util.Arrays;
+
+/**
+ * Log-linear histogram of nanosecond durations that never allocates after
+ * construction.
+ *
+ * Values below SUB_BUCKETS get a bucket each. Above that, each power of two
+ * is split into SUB_BUCKETS equal buckets, picked by the SUB_BITS bits after
+ * the leading one, so a reported percentile is at most 1/SUB_BUCKETS (about
+ * 3%) above the true value. Values past 2^MAX_EXPONENT ns land in the last
+ * bucket; max() and mean() are always exact.
+ *
+ * Not thread-safe: record from one thread, or under the caller's lock.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 40; // about 18 minutes
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long sum;
+    private long max;
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts[bucket(nanos)]++;
+        total++;
+        sum += nanos;
+        if (nanos > max) max = nanos;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    public long count() {
+        return total;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public long mean() {
+        return total == 0 ? 0 : sum / total;
+    }
+
+    /** Upper edge of the bucket holding the q-th quantile, never above max(). */
+    public long percentile(double q) {
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(max, bucketMax(i));
+        }
+        return max;
+    }
+
+    private static int bucket(long v) {
+        if (v < SUB_BUCKETS) return (int) v;
+        int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+        int i = (shift + 1) * SUB_BUCKETS + (int) ((v >>> shift) & (SUB_BUCKETS - 1));
+        return Math.min(i, BUCKETS - 1);
+    }
+
+    private static long bucketMax(int i) {
+        if (i < SUB_BUCKETS) return i;
+        int shift = i / SUB_BUCKETS - 1;
+        long sub = SUB_BUCKETS + i % SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,180 @@
+package chapter9;
+
+import java.util.Arrays;
+
+/**
+ * IntKeyHeapPriorityQueue with long priorities.
+ *
+ * Priorities live in a long[] parallel to the items, so 64-bit keys such as
+ * nanosecond timestamps are compared as primitives and never boxed. Sifting
+ * moves a hole and writes the displaced element once at the end.
+ */
+public class LongKeyHeapPriorityQueue<T> implements LongPriorityQueue<T> {
+
+    private long[] priorities;
+    private Object[] items;
+    private int size;
+
+    public LongKeyHeapPriorityQueue() {
+        this(16);
+    }
+
+    public LongKeyHeapPriorityQueue(int initialCapacity) {
+        int cap = Math.max(1, initialCapacity);
+        this.priorities = new long[cap];
+        this.items = new Object[cap];
+        this.size = 0;
+    }
+
+    @Override
+    public void enqueue(long priority, T data) {
+        ensureCapacity(size + 1);
+        siftUp(size, priority, data);
+        size++;
+    }
+
+    /**
+     * Enqueues a batch. Large batches (relative to the current size) are
+     * appended and the whole array is re-heapified in O(n + k); small batches
+     * are sifted up one at a time in O(k log n).
+     */
+    @Override
+    public void enqueueAll(long[] priorities, T[] items) {
+        if (priorities.length != items.length) {
+            throw new IllegalArgumentException("priorities and items differ in length: "
+                    + priorities.length + " vs " + items.length);
+        }
+        int k = priorities.length;
+        ensureCapacity(size + k);
+
+        // heapify costs ~2(n+k) compares, k sift-ups cost ~k*log2(n+k)
+        int levels = 32 - Integer.numberOfLeadingZeros(size + k);
+        if ((long) k * levels > 2L * (size + k)) {
+            System.arraycopy(priorities, 0, this.priorities, size, k);
+            System.arraycopy(items, 0, this.items, size, k);
+            size += k;
+            for (int i = (size >>> 1) - 1; i >= 0; i--) {
+                siftDown(i, this.priorities[i], this.items[i]);
+            }
+        } else {
+            for (int i = 0; i < k; i++) {
+                siftUp(size, priorities[i], items[i]);
+                size++;
+            }
+        }
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return removeFront();
+    }
+
+    @Override
+    public T poll() {
+        return size == 0 ? null : removeFront();
+    }
+
+    @Override
+    public int drainTo(T[] dst, int max) {
+        int n = Math.min(Math.min(max, size), dst.length);
+        for (int i = 0; i < n; i++) {
+            dst[i] = removeFront();
+        }
+        return n;
+    }
+
+    @Override
+    public T front() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return itemAt(0);
+    }
+
+    @Override
+    public long frontPriority() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return priorities[0];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int i) {
+        return (T) items[i];
+    }
+
+    private T removeFront() {
+        T result = itemAt(0);
+
+        size--;
+        long lastPriority = priorities[size];
+        Object lastItem = items[size];
+        items[size] = null;
+
+        if (size > 0) {
+            siftDown(0, lastPriority, lastItem);
+        }
+        return result;
+    }
+
+    // Moves the hole at i up until priority fits, then fills it.
+    private void siftUp(int i, long priority, Object item) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            long pp = priorities[parent];
+            if (priority >= pp) {
+                break;
+            }
+            priorities[i] = pp;
+            items[i] = items[parent];
+            i = parent;
+        }
+        priorities[i] = priority;
+        items[i] = item;
+    }
+
+    // Moves the hole at i down until priority fits, then fills it.
+    private void siftDown(int i, long priority, Object item) {
+        int half = size >>> 1; // nodes at or past half are leaves
+        while (i < half) {
+            int child = 2 * i + 1;
+            long cp = priorities[child];
+            int right = child + 1;
+            if (right < size && priorities[right] < cp) {
+                child = right;
+                cp = priorities[right];
+            }
+            if (priority <= cp) {
+                break;
+            }
+            priorities[i] = cp;
+            items[i] = items[child];
+            i = child;
+        }
+        priorities[i] = priority;
+        items[i] = item;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= priorities.length) {
+            return;
+        }
+        int newCap = Math.max(needed, priorities.length * 2);
+        priorities = Arrays.copyOf(priorities, newCap);
+        items = Arrays.copyOf(items, newCap);
+    }
+}
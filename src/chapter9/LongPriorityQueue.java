@@ -0,0 +1,16 @@
+package chapter9;
+
+public interface LongPriorityQueue<T> {
+    // lower number = higher priority; priorities are primitive longs such as epoch nanoseconds
+    public void enqueue(long priority, T data);
+    public void enqueueAll(long[] priorities, T[] items);
+    public T dequeue() throws Exception;
+    public T front() throws Exception;
+    public long frontPriority() throws Exception;
+    // removes and returns the front element, or null when empty
+    public T poll();
+    // removes up to max elements into dst in priority order and returns how many
+    public int drainTo(T[] dst, int max);
+    public int size();
+    public boolean isEmpty();
+}
@@ -0,0 +1,282 @@
+package chapter9;
+
+import java.util.Arrays;
+
+/**
+ * Double-ended priority queue (min-max heap).
+ *
+ * Even levels of the tree are min-ordered and odd levels are max-ordered, so
+ * the best element (lowest priority number) is at the root and the worst is
+ * one of its two children. peekMin/peekMax are O(1) and dequeueMin/dequeueMax
+ * are O(log n). Priorities and items are kept in parallel arrays.
+ *
+ * In bounded mode the queue holds at most capacity elements and acts as a
+ * top-K filter: an offer into a full queue replaces the current worst element,
+ * or is rejected in O(1) when it is no better than the worst.
+ */
+public class MinMaxHeapPriorityQueue<T> implements PriorityQueue<T> {
+
+    private int[] priorities;
+    private Object[] items;
+    private int size;
+    private final int capacity; // Integer.MAX_VALUE when unbounded
+
+    public MinMaxHeapPriorityQueue() {
+        this.capacity = Integer.MAX_VALUE;
+        this.priorities = new int[16];
+        this.items = new Object[16];
+    }
+
+    /**
+     * Creates a bounded queue that keeps the capacity best elements.
+     */
+    public MinMaxHeapPriorityQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.priorities = new int[Math.min(capacity, 16)];
+        this.items = new Object[Math.min(capacity, 16)];
+    }
+
+    public boolean isBounded() {
+        return capacity != Integer.MAX_VALUE;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /**
+     * Adds an element. In bounded mode a full queue drops its worst element to
+     * make room, or drops the new one if it is no better than the worst.
+     *
+     * @return false if the new element was rejected
+     */
+    public boolean offer(int priority, T data) {
+        if (size == capacity) {
+            int worst = maxIndex();
+            if (priority >= priorities[worst]) {
+                return false;
+            }
+            removeAt(worst);
+        }
+        ensureCapacity(size + 1);
+        priorities[size] = priority;
+        items[size] = data;
+        pushUp(size);
+        size++;
+        return true;
+    }
+
+    @Override
+    public void enqueue(int priority, T data) {
+        offer(priority, data);
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        return dequeueMin();
+    }
+
+    @Override
+    public T front() throws Exception {
+        return peekMin();
+    }
+
+    public T peekMin() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return itemAt(0);
+    }
+
+    public T peekMax() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return itemAt(maxIndex());
+    }
+
+    public int peekMinPriority() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return priorities[0];
+    }
+
+    public int peekMaxPriority() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return priorities[maxIndex()];
+    }
+
+    public T dequeueMin() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return removeAt(0);
+    }
+
+    public T dequeueMax() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return removeAt(maxIndex());
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T itemAt(int i) {
+        return (T) items[i];
+    }
+
+    private int maxIndex() {
+        if (size == 1) return 0;
+        if (size == 2) return 1;
+        return priorities[1] >= priorities[2] ? 1 : 2;
+    }
+
+    private T removeAt(int i) {
+        T result = itemAt(i);
+        size--;
+        priorities[i] = priorities[size];
+        items[i] = items[size];
+        items[size] = null;
+        if (i < size) {
+            pushDown(i);
+        }
+        return result;
+    }
+
+    private static boolean isMinLevel(int i) {
+        // level of i is floor(log2(i + 1)); even levels are min levels
+        return ((31 - Integer.numberOfLeadingZeros(i + 1)) & 1) == 0;
+    }
+
+    private void pushUp(int i) {
+        if (i == 0) {
+            return;
+        }
+        int parent = (i - 1) / 2;
+        if (isMinLevel(i)) {
+            if (priorities[i] > priorities[parent]) {
+                swap(i, parent);
+                pushUpMax(parent);
+            } else {
+                pushUpMin(i);
+            }
+        } else {
+            if (priorities[i] < priorities[parent]) {
+                swap(i, parent);
+                pushUpMin(parent);
+            } else {
+                pushUpMax(i);
+            }
+        }
+    }
+
+    private void pushUpMin(int i) {
+        while (i >= 3) {
+            int grand = ((i - 1) / 2 - 1) / 2;
+            if (priorities[i] >= priorities[grand]) break;
+            swap(i, grand);
+            i = grand;
+        }
+    }
+
+    private void pushUpMax(int i) {
+        while (i >= 3) {
+            int grand = ((i - 1) / 2 - 1) / 2;
+            if (priorities[i] <= priorities[grand]) break;
+            swap(i, grand);
+            i = grand;
+        }
+    }
+
+    private void pushDown(int i) {
+        if (isMinLevel(i)) {
+            pushDownMin(i);
+        } else {
+            pushDownMax(i);
+        }
+    }
+
+    private void pushDownMin(int i) {
+        while (2 * i + 1 < size) {
+            int m = extremeDescendant(i, true);
+            if (m > 2 * i + 2) {
+                // m is a grandchild
+                if (priorities[m] >= priorities[i]) return;
+                swap(m, i);
+                int parent = (m - 1) / 2;
+                if (priorities[m] > priorities[parent]) swap(m, parent);
+                i = m;
+            } else {
+                if (priorities[m] < priorities[i]) swap(m, i);
+                return;
+            }
+        }
+    }
+
+    private void pushDownMax(int i) {
+        while (2 * i + 1 < size) {
+            int m = extremeDescendant(i, false);
+            if (m > 2 * i + 2) {
+                if (priorities[m] <= priorities[i]) return;
+                swap(m, i);
+                int parent = (m - 1) / 2;
+                if (priorities[m] < priorities[parent]) swap(m, parent);
+                i = m;
+            } else {
+                if (priorities[m] > priorities[i]) swap(m, i);
+                return;
+            }
+        }
+    }
+
+    // Smallest (min) or largest (max) among the children and grandchildren of i.
+    private int extremeDescendant(int i, boolean min) {
+        int best = 2 * i + 1;
+        int right = 2 * i + 2;
+        if (right < size && (min ? priorities[right] < priorities[best] : priorities[right] > priorities[best])) {
+            best = right;
+        }
+        // the four grandchildren are contiguous
+        int end = Math.min(4 * i + 7, size);
+        for (int g = 4 * i + 3; g < end; g++) {
+            if (min ? priorities[g] < priorities[best] : priorities[g] > priorities[best]) {
+                best = g;
+            }
+        }
+        return best;
+    }
+
+    private void swap(int a, int b) {
+        int tp = priorities[a];
+        priorities[a] = priorities[b];
+        priorities[b] = tp;
+        Object ti = items[a];
+        items[a] = items[b];
+        items[b] = ti;
+    }
+
+    private void ensureCapacity(int needed) {
+        if (needed <= priorities.length) {
+            return;
+        }
+        int newCap = (int) Math.min((long) capacity, Math.max(needed, priorities.length * 2L));
+        priorities = Arrays.copyOf(priorities, newCap);
+        items = Arrays.copyOf(items, newCap);
+    }
+}
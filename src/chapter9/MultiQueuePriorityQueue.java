@@ -0,0 +1,177 @@
+package chapter9;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Relaxed concurrent priority queue (MultiQueue).
+ *
+ * Elements are spread over c * threads BinaryHeapPriorityQueue shards, each
+ * behind its own try-lock. enqueue goes to a random shard; dequeue looks at
+ * the cached head priority of two random shards and takes from the better
+ * one. There is no single hot head, so throughput scales with threads, but
+ * dequeue order is only approximately by priority: the returned element is
+ * usually among the best few, not always the best. An Observer can be
+ * attached to measure how far off (the rank error) dequeues actually are.
+ */
+public class MultiQueuePriorityQueue<T> implements PriorityQueue<T> {
+
+    /** Instrumentation hook, called while the shard lock is held. */
+    public interface Observer {
+        void enqueued(int priority);
+        void dequeued(int priority);
+    }
+
+    // above every int priority, so Integer.MAX_VALUE is still a real element
+    private static final long EMPTY = Long.MAX_VALUE;
+
+    // random two-choice attempts before dequeue falls back to a full scan
+    private static final int ATTEMPTS = 32;
+
+    private static final class Shard<T> {
+        final ReentrantLock lock = new ReentrantLock();
+        final BinaryHeapPriorityQueue<T> heap = new BinaryHeapPriorityQueue<>();
+        volatile long top = EMPTY; // cached head priority, read without the lock
+
+        void refreshTop() throws Exception {
+            top = heap.isEmpty() ? EMPTY : heap.frontPriority();
+        }
+    }
+
+    private final Shard<T>[] shards;
+    private final LongAdder size = new LongAdder();
+    private volatile Observer observer;
+
+    public MultiQueuePriorityQueue(int threads) {
+        this(threads, 2);
+    }
+
+    /**
+     * @param threads expected number of threads using the queue
+     * @param c       shards per thread; more shards mean less contention and a larger rank error
+     */
+    @SuppressWarnings("unchecked")
+    public MultiQueuePriorityQueue(int threads, int c) {
+        if (threads <= 0 || c <= 0) {
+            throw new IllegalArgumentException("threads and c must be positive");
+        }
+        int n = Math.max(2, threads * c);
+        shards = (Shard<T>[]) new Shard[n];
+        for (int i = 0; i < n; i++) {
+            shards[i] = new Shard<>();
+        }
+    }
+
+    public void setObserver(Observer observer) {
+        this.observer = observer;
+    }
+
+    @Override
+    public void enqueue(int priority, T data) {
+        ThreadLocalRandom rng = ThreadLocalRandom.current();
+        while (true) {
+            Shard<T> s = shards[rng.nextInt(shards.length)];
+            if (!s.lock.tryLock()) {
+                continue;
+            }
+            try {
+                s.heap.enqueue(priority, data);
+                if (priority < s.top) {
+                    s.top = priority;
+                }
+                size.increment();
+                Observer o = observer;
+                if (o != null) o.enqueued(priority);
+                return;
+            } finally {
+                s.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        ThreadLocalRandom rng = ThreadLocalRandom.current();
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            Shard<T> a = shards[rng.nextInt(shards.length)];
+            Shard<T> b = shards[rng.nextInt(shards.length)];
+            Shard<T> s = b.top < a.top ? b : a;
+            if (s.top == EMPTY) {
+                if (size.sum() == 0) break;
+                continue;
+            }
+            if (!s.lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (!s.heap.isEmpty()) {
+                    return takeLocked(s);
+                }
+            } finally {
+                s.lock.unlock();
+            }
+        }
+
+        // few non-empty shards left: scan them all
+        for (Shard<T> s : shards) {
+            if (s.top == EMPTY) continue;
+            s.lock.lock();
+            try {
+                if (!s.heap.isEmpty()) {
+                    return takeLocked(s);
+                }
+            } finally {
+                s.lock.unlock();
+            }
+        }
+        throw new Exception("PriorityQueue is empty");
+    }
+
+    private T takeLocked(Shard<T> s) throws Exception {
+        int priority = s.heap.frontPriority();
+        T result = s.heap.dequeue();
+        s.refreshTop();
+        size.decrement();
+        Observer o = observer;
+        if (o != null) o.dequeued(priority);
+        return result;
+    }
+
+    /**
+     * Returns the element at the head of the shard with the best cached head.
+     * Under concurrent updates this is a snapshot and may already be gone.
+     */
+    @Override
+    public T front() throws Exception {
+        while (true) {
+            Shard<T> best = null;
+            for (Shard<T> s : shards) {
+                if (s.top != EMPTY && (best == null || s.top < best.top)) {
+                    best = s;
+                }
+            }
+            if (best == null) {
+                throw new Exception("PriorityQueue is empty");
+            }
+            best.lock.lock();
+            try {
+                if (!best.heap.isEmpty()) {
+                    return best.heap.front();
+                }
+            } finally {
+                best.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return (int) size.sum();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size.sum() == 0;
+    }
+}
@@ -0,0 +1,188 @@
+package chapter9;
+
+/**
+ * Pairing heap: a heap-ordered multiway tree stored as first-child/next-sibling links.
+ *
+ * enqueue and meld just link two roots, so both are O(1). dequeue pairs up the
+ * root's children left to right and then folds the pairs right to left, which
+ * is O(log n) amortized. Nodes double as handles for decreaseKey.
+ */
+public class PairingHeapPriorityQueue<T> implements PriorityQueue<T> {
+
+    /** Handle to an entry, valid until the entry is dequeued. */
+    public static final class Node<T> {
+        private int priority;
+        private final T data;
+        private Node<T> child;
+        private Node<T> sibling;
+        private Node<T> prev; // parent if this is the first child, else previous sibling
+
+        private Node(int priority, T data) {
+            this.priority = priority;
+            this.data = data;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public T getData() {
+            return data;
+        }
+    }
+
+    private Node<T> root;
+    private int size;
+
+    @Override
+    public void enqueue(int priority, T data) {
+        insert(priority, data);
+    }
+
+    /**
+     * Adds an entry and returns its node for use with decreaseKey.
+     */
+    public Node<T> insert(int priority, T data) {
+        Node<T> n = new Node<>(priority, data);
+        root = link(root, n);
+        size++;
+        return n;
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        Node<T> old = root;
+        root = combineSiblings(old.child);
+        if (root != null) {
+            root.prev = null;
+        }
+        old.child = null;
+        size--;
+        return old.data;
+    }
+
+    @Override
+    public T front() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return root.data;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Lowers the node's priority number (raises its priority).
+     *
+     * The node must belong to this queue (directly or through meld).
+     *
+     * @throws IllegalArgumentException if p is larger than the current priority
+     *                                  or the node has already been dequeued
+     */
+    public void decreaseKey(Node<T> node, int p) {
+        if (node != root && node.prev == null) {
+            throw new IllegalArgumentException("node has already been dequeued");
+        }
+        if (p > node.priority) {
+            throw new IllegalArgumentException("new priority " + p + " is larger than " + node.priority);
+        }
+        node.priority = p;
+        if (node == root) {
+            return;
+        }
+
+        // cut the subtree out and link it back at the root
+        if (node.prev.child == node) {
+            node.prev.child = node.sibling;
+        } else {
+            node.prev.sibling = node.sibling;
+        }
+        if (node.sibling != null) {
+            node.sibling.prev = node.prev;
+        }
+        node.sibling = null;
+        node.prev = null;
+        root = link(root, node);
+    }
+
+    /**
+     * Moves every entry of other into this queue in O(1). other is left empty.
+     * Nodes from other remain valid handles, now for this queue.
+     */
+    public void meld(PairingHeapPriorityQueue<T> other) {
+        if (other == this || other.root == null) {
+            return;
+        }
+        root = link(root, other.root);
+        size += other.size;
+        other.root = null;
+        other.size = 0;
+    }
+
+    // Makes the root with the larger priority number the first child of the other.
+    private Node<T> link(Node<T> a, Node<T> b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (b.priority < a.priority) {
+            Node<T> tmp = a;
+            a = b;
+            b = tmp;
+        }
+        b.prev = a;
+        b.sibling = a.child;
+        if (a.child != null) {
+            a.child.prev = b;
+        }
+        a.child = b;
+        a.sibling = null;
+        return a;
+    }
+
+    // Two-pass pairing: link pairs left to right, then fold right to left.
+    private Node<T> combineSiblings(Node<T> first) {
+        if (first == null) {
+            return null;
+        }
+
+        // first pass: reverse list of paired roots, threaded through sibling
+        Node<T> pairs = null;
+        Node<T> a = first;
+        while (a != null) {
+            Node<T> b = a.sibling;
+            Node<T> rest = b == null ? null : b.sibling;
+            a.sibling = null;
+            a.prev = null;
+            if (b != null) {
+                b.sibling = null;
+                b.prev = null;
+            }
+            Node<T> pair = link(a, b);
+            pair.sibling = pairs;
+            pairs = pair;
+            a = rest;
+        }
+
+        // second pass: pairs is already right-to-left
+        Node<T> result = pairs;
+        pairs = pairs.sibling;
+        result.sibling = null;
+        while (pairs != null) {
+            Node<T> next = pairs.sibling;
+            pairs.sibling = null;
+            result = link(result, pairs);
+            pairs = next;
+        }
+        return result;
+    }
+}
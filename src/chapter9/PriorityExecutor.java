@@ -0,0 +1,523 @@
+package chapter9;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ExecutorService that runs tasks in priority order (lower number first) on a
+ * fixed number of virtual threads.
+ *
+ * Queued tasks live in any chapter9 PriorityQueue, which is only touched under
+ * the executor's lock, so it does not need to be thread-safe itself.
+ *
+ * Aging: with an aging interval of d nanoseconds, a task's priority improves
+ * by one for every d it waits. Since every queued task ages at the same rate,
+ * this needs no re-sorting; a task is simply queued under
+ * priority + (ticks since the executor started), and the order of those keys
+ * is the order of the aged priorities at any moment. Keys are ints, so once
+ * REBASE_TICKS ticks have passed the start point moves up to the current time
+ * and every waiting task is re-keyed by the same amount, which keeps their
+ * order. Only a priority above Integer.MAX_VALUE - REBASE_TICKS can still be
+ * clamped, and stops aging at Integer.MAX_VALUE. At the other end, tasks that
+ * have waited long enough to age past Integer.MIN_VALUE keep their order by
+ * taking consecutive keys from Integer.MIN_VALUE up; a new task with a priority
+ * within that many of Integer.MIN_VALUE can tie with or pass them.
+ *
+ * Per-priority caps: setConcurrencyLimit(p, n) lets at most n tasks of
+ * priority p run at once. A capped task that reaches the front is set aside in
+ * a FIFO for its priority and goes back into the queue when one of its peers
+ * finishes, so it never blocks tasks of other priorities.
+ *
+ * Cancellation: cancelling a queued task leaves it in the queue, since a
+ * PriorityQueue cannot remove from the middle; a worker throws it away when it
+ * reaches the front.
+ */
+public class PriorityExecutor extends AbstractExecutorService {
+
+    /** Priority used by execute() and the inherited submit() overloads. */
+    public static final int DEFAULT_PRIORITY = 0;
+
+    // aging ticks after which keys are rebased, leaving the same again as headroom
+    private static final long REBASE_TICKS = 1L << 30;
+
+    /** Queueing delay of the tasks of one priority that have started running. */
+    public record DelayStats(int priority, long tasks, long meanNanos, long p50Nanos,
+                             long p99Nanos, long maxNanos) {
+    }
+
+    private final PriorityQueue<Runnable> queue;
+    private final long agingNanos;
+    private long startNanos = System.nanoTime(); // aging ticks count from here; guarded by lock
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Condition terminated = lock.newCondition();
+
+    private final HashMap<Integer, Lane> lanes = new HashMap<>();
+    private final Thread[] workers;
+    private int liveWorkers;
+    private int idleWorkers;
+    private int queued; // in the queue or set aside by a cap, including cancelled tasks
+    private boolean shutdown;
+
+    private long submitted;
+    private long completed;
+    private long cancelledInQueue;
+    private long deferredByCap;
+
+    /** Runs tasks on the given number of virtual threads, with a binary heap and no aging. */
+    public PriorityExecutor(int threads) {
+        this(threads, new BinaryHeapPriorityQueue<>(), 0);
+    }
+
+    /**
+     * @param queue      empty queue that the executor takes over
+     * @param agingNanos wait that improves a task's priority by one, or 0 for no aging
+     */
+    public PriorityExecutor(int threads, PriorityQueue<Runnable> queue, long agingNanos) {
+        if (threads <= 0) throw new IllegalArgumentException("threads must be positive");
+        if (agingNanos < 0) throw new IllegalArgumentException("agingNanos must not be negative");
+        if (!queue.isEmpty()) throw new IllegalArgumentException("queue must be empty");
+        this.queue = queue;
+        this.agingNanos = agingNanos;
+        this.workers = new Thread[threads];
+        this.liveWorkers = threads;
+        for (int i = 0; i < threads; i++) {
+            workers[i] = Thread.ofVirtual().name("priority-executor-" + i).start(this::work);
+        }
+    }
+
+    public <V> Future<V> submit(int priority, Callable<V> task) {
+        if (task == null) throw new NullPointerException("task");
+        Task<V> t = new Task<>(priority, task);
+        enqueue(t);
+        return t;
+    }
+
+    public Future<?> submit(int priority, Runnable task) {
+        if (task == null) throw new NullPointerException("task");
+        Task<Object> t = new Task<>(priority, task, null);
+        enqueue(t);
+        return t;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (command == null) throw new NullPointerException("command");
+        enqueue(command instanceof Task<?> t ? t : new Task<>(DEFAULT_PRIORITY, command, null));
+    }
+
+    @Override
+    protected <V> RunnableFuture<V> newTaskFor(Callable<V> callable) {
+        return new Task<>(DEFAULT_PRIORITY, callable);
+    }
+
+    @Override
+    protected <V> RunnableFuture<V> newTaskFor(Runnable runnable, V value) {
+        return new Task<>(DEFAULT_PRIORITY, runnable, value);
+    }
+
+    /**
+     * Lets at most max tasks of the given priority run at the same time.
+     * Takes effect for tasks that start after the call.
+     */
+    public void setConcurrencyLimit(int priority, int max) {
+        if (max <= 0) throw new IllegalArgumentException("max must be positive");
+        lock.lock();
+        try {
+            Lane lane = lane(priority);
+            lane.limit = max;
+            // a raised limit may free tasks that were set aside
+            while (lane.running + lane.released < lane.limit && release(lane)) {
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // -----------------------------
+    // metrics
+    // -----------------------------
+
+    /** Queueing delay per priority, from submit until a worker picks the task up. */
+    public List<DelayStats> queueDelays() {
+        lock.lock();
+        try {
+            ArrayList<DelayStats> out = new ArrayList<>();
+            for (Lane lane : lanes.values()) {
+                if (lane.delays.count() > 0) {
+                    out.add(lane.stats());
+                }
+            }
+            out.sort((a, b) -> Integer.compare(a.priority(), b.priority()));
+            return out;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long submittedCount() {
+        lock.lock();
+        try {
+            return submitted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long completedCount() {
+        lock.lock();
+        try {
+            return completed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Tasks that were cancelled before they started and were discarded by a worker. */
+    public long cancelledInQueueCount() {
+        lock.lock();
+        try {
+            return cancelledInQueue;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** How many times a task reached the front but was set aside by a concurrency limit. */
+    public long deferredByCapCount() {
+        lock.lock();
+        try {
+            return deferredByCap;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Tasks waiting to run, including cancelled ones not yet discarded. */
+    public int queuedCount() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // -----------------------------
+    // lifecycle
+    // -----------------------------
+
+    @Override
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Stops accepting tasks, interrupts running ones and returns those never started. */
+    @Override
+    public List<Runnable> shutdownNow() {
+        ArrayList<Runnable> pending = new ArrayList<>();
+        lock.lock();
+        try {
+            shutdown = true;
+            while (!queue.isEmpty()) {
+                Task<?> t = (Task<?>) queue.dequeue();
+                if (!t.isDone()) pending.add(t);
+            }
+            for (Lane lane : lanes.values()) {
+                for (Task<?> t : lane.deferred) {
+                    if (!t.isDone()) pending.add(t);
+                }
+                lane.deferred.clear();
+                lane.released = 0;
+            }
+            queued = 0;
+            available.signalAll();
+        } catch (Exception e) {
+            // dequeue only throws when empty, which the loop checks first
+            throw new IllegalStateException(e);
+        } finally {
+            lock.unlock();
+        }
+        for (Thread w : workers) {
+            w.interrupt();
+        }
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        lock.lock();
+        try {
+            return shutdown;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isTerminated() {
+        lock.lock();
+        try {
+            return liveWorkers == 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (liveWorkers > 0) {
+                if (nanos <= 0) return false;
+                nanos = terminated.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // -----------------------------
+    // dispatch
+    // -----------------------------
+
+    private void enqueue(Task<?> t) {
+        lock.lock();
+        try {
+            if (shutdown) throw new RejectedExecutionException("PriorityExecutor is shut down");
+            t.lane = lane(t.priority);
+            t.submitNanos = System.nanoTime();
+            t.key = agingNanos == 0 ? t.priority : agedKey(t.priority, t.submitNanos);
+            queue.enqueue(t.key, t);
+            queued++;
+            submitted++;
+            // a busy worker will find the task on its own; waking one costs a park/unpark
+            if (idleWorkers > 0) available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // priority + ticks since startNanos, clamped to the int range of PriorityQueue
+    private int agedKey(int priority, long now) {
+        long ticks = (now - startNanos) / agingNanos;
+        if (ticks >= REBASE_TICKS) {
+            rebase(ticks);
+            ticks = 0;
+        }
+        return clamp((long) priority + ticks);
+    }
+
+    // Moves startNanos forward by shift ticks and lowers every waiting task's
+    // key by the same amount. The queue has no iterator, so it is drained and
+    // refilled in dequeue order, which keeps ties in the order they had.
+    // Keys that would fall below Integer.MIN_VALUE are not clamped together but
+    // packed into consecutive keys from Integer.MIN_VALUE up, in their old order.
+    private void rebase(long shift) {
+        startNanos += shift * agingNanos;
+        ArrayList<Task<?>> waiting = new ArrayList<>(queue.size());
+        try {
+            while (!queue.isEmpty()) waiting.add((Task<?>) queue.dequeue());
+        } catch (Exception e) {
+            // dequeue only throws when empty, which the loop checks first
+            throw new IllegalStateException(e);
+        }
+
+        ArrayList<Task<?>> all = new ArrayList<>(waiting);
+        for (Lane lane : lanes.values()) all.addAll(lane.deferred);
+        all.sort((a, b) -> Integer.compare(a.key, b.key)); // stable, so queued ties stay in dequeue order
+
+        long prevOld = 0;
+        long prevNew = Long.MIN_VALUE;
+        for (Task<?> t : all) {
+            long k = Math.max((long) t.key - shift, Integer.MIN_VALUE);
+            if (prevNew != Long.MIN_VALUE) {
+                if (t.key == prevOld) k = prevNew;
+                else if (k <= prevNew) k = prevNew + 1;
+            }
+            prevOld = t.key;
+            prevNew = k;
+            t.key = clamp(k);
+        }
+
+        for (Task<?> t : waiting) queue.enqueue(t.key, t);
+    }
+
+    private static int clamp(long key) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, key));
+    }
+
+    private void work() {
+        Task<?> t = null;
+        while ((t = take(t)) != null) {
+            // drop an interrupt meant for the previous task, e.g. cancel(true)
+            Thread.interrupted();
+            t.run();
+        }
+    }
+
+    // Accounts for the task this worker just ran and returns its next one, in
+    // a single lock hold. Returns null once shut down and drained.
+    private Task<?> take(Task<?> done) {
+        lock.lock();
+        try {
+            if (done != null) {
+                finished(done);
+            }
+            while (true) {
+                Task<?> t = pollRunnable();
+                if (t != null) return t;
+                if (shutdown && queued == 0) {
+                    // wake the next idle worker so it exits too
+                    available.signal();
+                    if (--liveWorkers == 0) terminated.signalAll();
+                    return null;
+                }
+                idleWorkers++;
+                try {
+                    available.await();
+                } catch (InterruptedException e) {
+                    // shutdownNow; shutdown and queued already say whether to stop
+                } finally {
+                    idleWorkers--;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Dequeues until it finds a live task whose priority is under its limit.
+    private Task<?> pollRunnable() {
+        try {
+            while (!queue.isEmpty()) {
+                Task<?> t = (Task<?>) queue.dequeue();
+                Lane lane = t.lane;
+                boolean wasReleased = t.released;
+                if (wasReleased) {
+                    t.released = false;
+                    lane.released--;
+                }
+                if (t.isDone()) {
+                    queued--;
+                    cancelledInQueue++;
+                    continue;
+                }
+                if (lane.running >= lane.limit) {
+                    // a released task lost its slot to a peer; it is still the oldest
+                    if (wasReleased) lane.deferred.addFirst(t);
+                    else lane.deferred.addLast(t);
+                    deferredByCap++;
+                    continue;
+                }
+                queued--;
+                lane.running++;
+                lane.delays.record(System.nanoTime() - t.submitNanos);
+                return t;
+            }
+            return null;
+        } catch (Exception e) {
+            // dequeue only throws when empty, which the loop checks first
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void finished(Task<?> t) {
+        Lane lane = t.lane;
+        lane.running--;
+        completed++;
+        if (lane.running + lane.released < lane.limit && release(lane) && idleWorkers > 0) {
+            available.signal();
+        }
+    }
+
+    // Moves the oldest live task set aside for this lane back into the queue,
+    // under its original key so it keeps the age it had already built up.
+    private boolean release(Lane lane) {
+        Task<?> t;
+        while ((t = lane.deferred.poll()) != null) {
+            if (t.isDone()) {
+                queued--;
+                cancelledInQueue++;
+                continue;
+            }
+            t.released = true;
+            lane.released++;
+            queue.enqueue(t.key, t);
+            return true;
+        }
+        return false;
+    }
+
+    private Lane lane(int priority) {
+        Lane lane = lanes.get(priority);
+        if (lane == null) {
+            lane = new Lane(priority);
+            lanes.put(priority, lane);
+        }
+        return lane;
+    }
+
+    // -----------------------------
+    // small types
+    // -----------------------------
+
+    // Everything the executor tracks for one priority; guarded by lock.
+    private static final class Lane {
+        final int priority;
+        int limit = Integer.MAX_VALUE;
+        int running;
+        int released; // tasks moved back from deferred that have not been dequeued yet
+        final ArrayDeque<Task<?>> deferred = new ArrayDeque<>();
+
+        final LatencyHistogram delays = new LatencyHistogram(); // queueing delay, ns
+
+        Lane(int priority) {
+            this.priority = priority;
+        }
+
+        DelayStats stats() {
+            return new DelayStats(priority, delays.count(), delays.mean(),
+                    delays.percentile(0.50), delays.percentile(0.99), delays.max());
+        }
+    }
+
+    private static final class Task<V> extends FutureTask<V> {
+        final int priority;
+        Lane lane;
+        int key;
+        long submitNanos;
+        boolean released;
+
+        Task(int priority, Callable<V> callable) {
+            super(callable);
+            this.priority = priority;
+        }
+
+        Task(int priority, Runnable runnable, V result) {
+            super(runnable, result);
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package chapter9;
+
+/**
+ * Picks a PriorityQueue implementation from what the caller knows about its keys.
+ */
+public final class PriorityQueues {
+
+    // above this many distinct priorities the bucket arrays stop paying for themselves
+    static final int MAX_BUCKETS = 1 << 20;
+
+    private PriorityQueues() {
+    }
+
+    /**
+     * @param minPriority smallest priority that will be enqueued
+     * @param maxPriority largest priority that will be enqueued
+     * @param monotone    true if enqueued priorities never drop below the current minimum
+     */
+    public static <T> PriorityQueue<T> forKeyRange(int minPriority, int maxPriority, boolean monotone) {
+        if (maxPriority < minPriority) {
+            throw new IllegalArgumentException("maxPriority < minPriority");
+        }
+        long range = (long) maxPriority - minPriority + 1;
+        if (range <= MAX_BUCKETS) {
+            return new BucketPriorityQueue<>(minPriority, maxPriority);
+        }
+        if (monotone) {
+            return new RadixHeapPriorityQueue<>(minPriority);
+        }
+        return new IntKeyHeapPriorityQueue<>();
+    }
+}
@@ -0,0 +1,229 @@
+package chapter9;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exposes any chapter9 Queue as a Flow.Publisher.
+ *
+ * Producers call offer(), which parks while the queue holds capacity items.
+ * Every subscriber gets its own virtual thread that parks while it has no
+ * demand or the queue is empty, and delivers up to batchSize items per wakeup.
+ * Each item goes to exactly one subscriber (work-queue semantics, not broadcast).
+ *
+ * The wrapped queue must not be touched directly once it is handed to the publisher.
+ */
+public class QueuePublisher<T> implements Flow.Publisher<T>, AutoCloseable {
+
+    private static final int DEFAULT_BATCH = 64;
+
+    private final Queue<T> queue;
+    private final int capacity;
+    private final int batchSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private boolean closed;
+
+    private final AtomicInteger subscriberIds = new AtomicInteger();
+
+    public QueuePublisher(Queue<T> queue, int capacity) {
+        this(queue, capacity, DEFAULT_BATCH);
+    }
+
+    public QueuePublisher(Queue<T> queue, int capacity, int batchSize) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        if (batchSize <= 0) throw new IllegalArgumentException("batchSize must be positive");
+        this.queue = queue;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Adds an item, parking the caller while the queue is full.
+     *
+     * @throws IllegalStateException if the publisher has been closed
+     */
+    public void offer(T item) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (queue.size() >= capacity && !closed) {
+                notFull.await();
+            }
+            enqueueLocked(item);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds an item, parking for at most the given timeout while the queue is full.
+     *
+     * @return false if the queue was still full when the timeout expired
+     */
+    public boolean offer(T item, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queue.size() >= capacity && !closed) {
+                if (nanos <= 0) return false;
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueueLocked(item);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueueLocked(T item) {
+        if (closed) throw new IllegalStateException("Publisher is closed");
+        queue.enqueue(item);
+        notEmpty.signal();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting new items. Subscribers receive onComplete once the
+     * queue has been drained.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        if (subscriber == null) throw new NullPointerException("subscriber");
+        QueueSubscription sub = new QueueSubscription(subscriber);
+        sub.worker = Thread.ofVirtual()
+                .name("queue-publisher-" + subscriberIds.incrementAndGet())
+                .unstarted(sub::run);
+        sub.worker.start();
+    }
+
+    // Moves up to max items into buf. Parks while the queue is empty.
+    // Returns 0 only when the publisher is closed and drained.
+    private int takeBatch(Object[] buf, int max) throws Exception {
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                if (closed) return 0;
+                notEmpty.await();
+            }
+            int n = 0;
+            while (n < max && !queue.isEmpty()) {
+                buf[n++] = queue.dequeue();
+            }
+            if (!queue.isEmpty()) {
+                // let another subscriber pick up what this one left behind
+                notEmpty.signal();
+            }
+            notFull.signalAll();
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private final class QueueSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super T> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private volatile boolean cancelled;
+        private volatile Throwable badRequest;
+        private Thread worker;
+
+        QueueSubscription(Flow.Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                badRequest = new IllegalArgumentException("request must be positive: " + n);
+            } else {
+                // saturate at Long.MAX_VALUE, which means unbounded demand
+                demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            }
+            LockSupport.unpark(worker);
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            if (Thread.currentThread() != worker) {
+                worker.interrupt();
+            }
+        }
+
+        private void run() {
+            @SuppressWarnings("unchecked")
+            T[] buf = (T[]) new Object[batchSize];
+            try {
+                subscriber.onSubscribe(this);
+                while (!cancelled) {
+                    long want = awaitDemand();
+                    if (want == 0) break;
+
+                    int n = takeBatch(buf, (int) Math.min(want, batchSize));
+                    if (n == 0) {
+                        if (!cancelled) subscriber.onComplete();
+                        return;
+                    }
+
+                    // a cancel mid-batch still delivers what was already taken,
+                    // which Flow allows and which keeps items from being lost
+                    for (int i = 0; i < n; i++) {
+                        subscriber.onNext(buf[i]);
+                        buf[i] = null;
+                    }
+                    if (want != Long.MAX_VALUE) demand.addAndGet(-n);
+                }
+            } catch (InterruptedException ex) {
+                // cancelled while parked on the queue
+            } catch (Throwable ex) {
+                if (!cancelled) {
+                    cancelled = true;
+                    subscriber.onError(ex);
+                }
+            }
+        }
+
+        // Parks until there is outstanding demand; returns 0 if cancelled.
+        private long awaitDemand() {
+            while (true) {
+                if (badRequest != null) {
+                    cancelled = true;
+                    subscriber.onError(badRequest);
+                    return 0;
+                }
+                if (cancelled) return 0;
+                long d = demand.get();
+                if (d > 0) return d;
+                LockSupport.park(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package chapter9;
+
+import java.util.Arrays;
+
+/**
+ * Radix heap for monotone priorities, e.g. timestamps or Dijkstra distances.
+ *
+ * Priorities handed to enqueue must never be smaller than the current minimum
+ * (the last value returned by dequeue or front). In exchange, any int range is
+ * allowed and each element is moved between buckets at most 32 times over its
+ * lifetime, so enqueue is O(1) and dequeue is amortized O(log range) with only
+ * cheap XOR/leading-zero work instead of comparisons.
+ *
+ * Bucket 0 holds entries equal to the current minimum; bucket i > 0 holds
+ * entries whose highest bit differing from the minimum is bit i-1.
+ */
+public class RadixHeapPriorityQueue<T> implements PriorityQueue<T> {
+
+    private static final int BUCKETS = 33;
+
+    private final int[][] keys = new int[BUCKETS][];
+    private final Object[][] vals = new Object[BUCKETS][];
+    private final int[] count = new int[BUCKETS];
+    private int bucket0Head; // bucket 0 is consumed from the front to keep it FIFO
+
+    private int last;    // current minimum, stored with the sign bit flipped
+    private int size;
+
+    public RadixHeapPriorityQueue() {
+        this(Integer.MIN_VALUE);
+    }
+
+    /**
+     * @param lowerBound smallest priority that will ever be enqueued
+     */
+    public RadixHeapPriorityQueue(int lowerBound) {
+        for (int i = 0; i < BUCKETS; i++) {
+            keys[i] = new int[8];
+            vals[i] = new Object[8];
+        }
+        last = lowerBound ^ Integer.MIN_VALUE;
+    }
+
+    @Override
+    public void enqueue(int priority, T data) {
+        int key = priority ^ Integer.MIN_VALUE; // unsigned order now matches signed order
+        if (Integer.compareUnsigned(key, last) < 0) {
+            throw new IllegalArgumentException("priority " + priority
+                    + " is below the current minimum " + (last ^ Integer.MIN_VALUE));
+        }
+        push(bucketOf(key), key, data);
+        size++;
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        pull();
+        int i = bucket0Head++;
+        T result = valAt(0, i);
+        vals[0][i] = null;
+        if (bucket0Head == count[0]) {
+            count[0] = 0;
+            bucket0Head = 0;
+        }
+        size--;
+        return result;
+    }
+
+    @Override
+    public T front() throws Exception {
+        if (size == 0) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        pull();
+        return valAt(0, bucket0Head);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T valAt(int b, int i) {
+        return (T) vals[b][i];
+    }
+
+    private int bucketOf(int key) {
+        return 32 - Integer.numberOfLeadingZeros(key ^ last);
+    }
+
+    // Makes bucket 0 non-empty by advancing the minimum to the smallest key in
+    // the first non-empty bucket and redistributing that bucket downward.
+    private void pull() {
+        if (count[0] > bucket0Head) {
+            return;
+        }
+
+        int b = 1;
+        while (count[b] == 0) b++;
+
+        int n = count[b];
+        int[] ks = keys[b];
+        Object[] vs = vals[b];
+
+        int min = ks[0];
+        for (int i = 1; i < n; i++) {
+            if (Integer.compareUnsigned(ks[i], min) < 0) min = ks[i];
+        }
+        last = min;
+
+        // every entry lands in a bucket below b, so b can be reused afterwards
+        count[b] = 0;
+        for (int i = 0; i < n; i++) {
+            push(bucketOf(ks[i]), ks[i], vs[i]);
+            vs[i] = null;
+        }
+    }
+
+    private void push(int b, int key, Object val) {
+        int n = count[b];
+        if (n == keys[b].length) {
+            keys[b] = Arrays.copyOf(keys[b], n * 2);
+            vals[b] = Arrays.copyOf(vals[b], n * 2);
+        }
+        keys[b][n] = key;
+        vals[b][n] = val;
+        count[b] = n + 1;
+    }
+}
@@ -1,23 +1,22 @@
 package chapter9;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class SortedArrayListPriorityQueue<T> implements PriorityQueue<T> {
 
-    private static class Entry<T> implements Comparable<Entry<T>> {
+    private static class Entry<T> {
         final int priority;
         final T data;
         Entry(int priority, T data) {
             this.priority = priority;
             this.data = data;
         }
-
-        @Override
-        public int compareTo(Entry<T> o) {
-            return this.priority - o.priority;
-        }
     }
 
+    // Sorted by priority DESC so the highest priority (lowest number) sits at the
+    // end, where it can be removed without shifting anything. Among equal
+    // priorities the oldest entry is closest to the end, which keeps it FIFO.
     private final ArrayList<Entry<T>> list;
 
     public SortedArrayListPriorityQueue() {
@@ -26,21 +25,76 @@ public class SortedArrayListPriorityQueue<T> implements PriorityQueue<T> {
 
     @Override
     public void enqueue(int priority, T data) {
-        // TODO: insert so list is sorted by priority ASC (lower number is higher priority)
-        list.add(new Entry<>(priority, data));
-        list.sort(null);
+        // binary search, then ArrayList.add(index, e) shifts the tail with one arraycopy
+        list.add(insertionPoint(priority), new Entry<>(priority, data));
+    }
+
+    /**
+     * Enqueues a batch in O(n + k log k): the batch is sorted on its own and
+     * then merged with the existing entries in a single pass.
+     */
+    @SuppressWarnings("unchecked")
+    public void enqueueAll(int[] priorities, T[] items) {
+        if (priorities.length != items.length) {
+            throw new IllegalArgumentException("priorities and items differ in length: "
+                    + priorities.length + " vs " + items.length);
+        }
+        int k = priorities.length;
+        if (k == 0) {
+            return;
+        }
+
+        Entry<T>[] batch = (Entry<T>[]) new Entry[k];
+        for (int i = 0; i < k; i++) {
+            batch[i] = new Entry<>(priorities[i], items[i]);
+        }
+        // stable ASC sort then reverse: priority DESC, later batch items first among ties
+        Arrays.sort(batch, (a, b) -> Integer.compare(a.priority, b.priority));
+        for (int i = 0, j = k - 1; i < j; i++, j--) {
+            Entry<T> tmp = batch[i];
+            batch[i] = batch[j];
+            batch[j] = tmp;
+        }
+
+        int n = list.size();
+        Entry<T>[] merged = (Entry<T>[]) new Entry[n + k];
+        int i = 0, j = 0, out = 0;
+        while (i < n && j < k) {
+            // on a tie the batch entry is newer, so it goes further from the end
+            if (list.get(i).priority > batch[j].priority) merged[out++] = list.get(i++);
+            else merged[out++] = batch[j++];
+        }
+        while (i < n) merged[out++] = list.get(i++);
+        while (j < k) merged[out++] = batch[j++];
+
+        list.clear();
+        list.addAll(Arrays.asList(merged));
     }
 
     @Override
     public T dequeue() throws Exception {
-        // TODO: remove index 0
-        return list.remove(0).data;
+        if (isEmpty()) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return list.remove(list.size() - 1).data;
     }
 
     @Override
     public T front() throws Exception {
-        // TODO: return index 0
-        return list.getFirst().data;
+        if (isEmpty()) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return list.get(list.size() - 1).data;
+    }
+
+    /**
+     * Priority of the element front() would return.
+     */
+    public int frontPriority() throws Exception {
+        if (isEmpty()) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return list.get(list.size() - 1).priority;
     }
 
     @Override
@@ -52,4 +106,20 @@ public class SortedArrayListPriorityQueue<T> implements PriorityQueue<T> {
     public boolean isEmpty() {
         return list.isEmpty();
     }
+
+    // First index whose priority is <= the given one. Inserting there places the
+    // new entry ahead of (further from the end than) any equal priorities.
+    private int insertionPoint(int priority) {
+        int lo = 0;
+        int hi = list.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (list.get(mid).priority > priority) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
 }
@@ -5,63 +5,191 @@ import my.util.DNode;
 
 public class SortedDLinkedListPriorityQueue<T> implements PriorityQueue<T> {
 
-    private static class Entry<T> implements Comparable<Entry<T>> {
+    private static class Entry<T> {
         final int priority;
         final T data;
         Entry(int priority, T data) {
             this.priority = priority;
             this.data = data;
         }
+    }
 
-        @Override
-        public int compareTo(Entry<T> o) {
-            return this.priority - o.priority;
+    // One node of an express lane. Level 1 lanes point straight at list nodes;
+    // "down" is the same position one level lower (null on level 1).
+    private static class Index<T> {
+        final DNode<Entry<T>> node;
+        final Index<T> down;
+        Index<T> right;
+        Index(DNode<Entry<T>> node, Index<T> down) {
+            this.node = node;
+            this.down = down;
         }
     }
 
+    private static final int MAX_LEVEL = 16;
+
+    // how far back from the tail the tail-first search looks before giving up
+    private static final int TAIL_WALK = 8;
+
     private final DLinkedList<Entry<T>> list;
 
+    // Skip list index over the list nodes. heads[l] is a sentinel (node == null)
+    // in front of level l, tails[l] is the last index node on level l.
+    private final Index<T>[] heads;
+    private final Index<T>[] tails;
+    private final Index<T>[] update; // scratch: predecessor on each level during insert
+    private int levels;
+
+    private final boolean tailFirst;
+    private int seed = 0x2545F491;
+
     public SortedDLinkedListPriorityQueue() {
-        list = new DLinkedList<>();
+        this(true);
+    }
+
+    /**
+     * @param tailFirst check the last few nodes before searching the index, which
+     *                  makes inserts at or near the current maximum O(1)
+     */
+    @SuppressWarnings("unchecked")
+    public SortedDLinkedListPriorityQueue(boolean tailFirst) {
+        this.list = new DLinkedList<>();
+        this.tailFirst = tailFirst;
+        this.heads = (Index<T>[]) new Index[MAX_LEVEL + 1];
+        this.tails = (Index<T>[]) new Index[MAX_LEVEL + 1];
+        this.update = (Index<T>[]) new Index[MAX_LEVEL + 1];
+        for (int l = 1; l <= MAX_LEVEL; l++) {
+            heads[l] = new Index<>(null, l > 1 ? heads[l - 1] : null);
+            tails[l] = heads[l];
+        }
     }
 
     @Override
     public void enqueue(int priority, T data) {
         Entry<T> newentry = new Entry<>(priority, data);
-        if (isEmpty()) {
-            list.add(newentry);
+
+        // Algorithm: the list stays sorted with the highest priority at the head.
+        // The new entry goes after every entry with priority <= its own, so equal
+        // priorities come out in FIFO order.
+        if (tailFirst && enqueueNearTail(newentry)) {
             return;
         }
-        
-        // Algorithm: make sure first item in DLInkedList is always highest priority
-        // Start with first item and traverse the list until you get to a higher priority item
-        // Insert the new item before the one you just found
-        DNode<Entry<T>> curr = list.get(0);
-        while (curr!=null) {
-            if (priority<curr.getData().priority) {
-                list.addBefore(curr, newentry);
-                return;
+
+        // walk the express lanes from the top, recording the last index node on
+        // each level whose priority is <= the new one
+        Index<T> x = heads[levels];
+        for (int l = levels; l >= 1; l--) {
+            while (x.right != null && x.right.node.getData().priority <= priority) {
+                x = x.right;
+            }
+            update[l] = x;
+            if (l > 1) {
+                x = x.down;
+            }
+        }
+
+        // finish on the list itself
+        DNode<Entry<T>> pred = levels > 0 ? update[1].node : null;
+        DNode<Entry<T>> next = pred == null ? list.getFirst() : pred.getNext();
+        while (next != null && next.getData().priority <= priority) {
+            pred = next;
+            next = next.getNext();
+        }
+
+        DNode<Entry<T>> newnode = pred == null ? list.addFirst(newentry) : list.addAfter(pred, newentry);
+        link(newnode, randomLevel());
+    }
+
+    // Inserts near the tail if the spot is within TAIL_WALK nodes of it.
+    private boolean enqueueNearTail(Entry<T> newentry) {
+        DNode<Entry<T>> pred = list.getLast();
+        for (int i = 0; i < TAIL_WALK && pred != null; i++) {
+            if (pred.getData().priority <= newentry.priority) {
+                DNode<Entry<T>> newnode = list.addAfter(pred, newentry);
+
+                // a lane's tail precedes the new node iff its priority is <= ours;
+                // stop promoting at the first lane where that is not true
+                int level = randomLevel();
+                int l = 1;
+                while (l <= level && (tails[l] == heads[l]
+                        || tails[l].node.getData().priority <= newentry.priority)) {
+                    update[l] = tails[l];
+                    l++;
+                }
+                link(newnode, l - 1);
+                return true;
             }
-            curr = curr.getNext();
+            pred = pred.getPrev();
         }
+        return false;
+    }
 
-        // if you get to the end of the list, add it at the end
-        if (curr==null) {
-            list.add(newentry); 
+    // Adds index nodes for newnode on levels 1..level after update[l].
+    private void link(DNode<Entry<T>> newnode, int level) {
+        Index<T> below = null;
+        for (int l = 1; l <= level; l++) {
+            if (l > levels) {
+                update[l] = heads[l];
+                levels = l;
+            }
+            Index<T> idx = new Index<>(newnode, below);
+            idx.right = update[l].right;
+            update[l].right = idx;
+            if (tails[l] == update[l]) {
+                tails[l] = idx;
+            }
+            below = idx;
         }
+    }
+
+    // Geometric level with p = 1/4, like java.util.concurrent.ConcurrentSkipListMap.
+    private int randomLevel() {
+        // xorshift32
+        int r = seed;
+        r ^= r << 13;
+        r ^= r >>> 17;
+        r ^= r << 5;
+        seed = r;
 
+        int level = 0;
+        while ((r & 3) == 0 && level < MAX_LEVEL) {
+            level++;
+            r >>>= 2;
+        }
+        return level;
     }
 
     @Override
     public T dequeue() throws Exception {
-        // TODO: removeFirst()
-        return list.removeFirst().getData().data;
+        if (isEmpty()) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        DNode<Entry<T>> removed = list.removeFirst();
+
+        // the head can only be the first index node on any lane
+        for (int l = 1; l <= levels; l++) {
+            Index<T> first = heads[l].right;
+            if (first == null || first.node != removed) {
+                break;
+            }
+            heads[l].right = first.right;
+            if (tails[l] == first) {
+                tails[l] = heads[l];
+            }
+        }
+        while (levels > 0 && heads[levels].right == null) {
+            levels--;
+        }
+
+        return removed.getData().data;
     }
 
     @Override
     public T front() throws Exception {
-        // TODO: peek head
-        return list.get(0).getData().data;
+        if (isEmpty()) {
+            throw new Exception("PriorityQueue is empty");
+        }
+        return list.getFirst().getData().data;
     }
 
     @Override
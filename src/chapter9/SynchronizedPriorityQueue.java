@@ -0,0 +1,39 @@
+package chapter9;
+
+/**
+ * Makes any PriorityQueue thread-safe by holding one monitor around every call.
+ * Simple and correct, but every thread contends on the same lock.
+ */
+public class SynchronizedPriorityQueue<T> implements PriorityQueue<T> {
+
+    private final PriorityQueue<T> pq;
+
+    public SynchronizedPriorityQueue(PriorityQueue<T> pq) {
+        this.pq = pq;
+    }
+
+    @Override
+    public synchronized void enqueue(int priority, T data) {
+        pq.enqueue(priority, data);
+    }
+
+    @Override
+    public synchronized T dequeue() throws Exception {
+        return pq.dequeue();
+    }
+
+    @Override
+    public synchronized T front() throws Exception {
+        return pq.front();
+    }
+
+    @Override
+    public synchronized int size() {
+        return pq.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return pq.isEmpty();
+    }
+}
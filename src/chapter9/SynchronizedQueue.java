@@ -0,0 +1,39 @@
+package chapter9;
+
+/**
+ * Makes any Queue thread-safe by holding one monitor around every call.
+ * Like SynchronizedPriorityQueue, every thread contends on the same lock.
+ */
+public class SynchronizedQueue<T> implements Queue<T> {
+
+    private final Queue<T> q;
+
+    public SynchronizedQueue(Queue<T> q) {
+        this.q = q;
+    }
+
+    @Override
+    public synchronized void enqueue(T data) {
+        q.enqueue(data);
+    }
+
+    @Override
+    public synchronized T dequeue() throws Exception {
+        return q.dequeue();
+    }
+
+    @Override
+    public synchronized T front() throws Exception {
+        return q.front();
+    }
+
+    @Override
+    public synchronized int size() {
+        return q.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return q.isEmpty();
+    }
+}
@@ -0,0 +1,39 @@
+package chapter9;
+
+/**
+ * Makes any Stack thread-safe by holding one monitor around every call.
+ * Like SynchronizedPriorityQueue, every thread contends on the same lock.
+ */
+public class SynchronizedStack<T> implements Stack<T> {
+
+    private final Stack<T> s;
+
+    public SynchronizedStack(Stack<T> s) {
+        this.s = s;
+    }
+
+    @Override
+    public synchronized void push(T data) {
+        s.push(data);
+    }
+
+    @Override
+    public synchronized T pop() throws Exception {
+        return s.pop();
+    }
+
+    @Override
+    public synchronized T top() throws Exception {
+        return s.top();
+    }
+
+    @Override
+    public synchronized int size() {
+        return s.size();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return s.isEmpty();
+    }
+}
@@ -0,0 +1,332 @@
+package chapter9;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Hierarchical timing wheel keyed by deadline.
+ *
+ * The priority passed to enqueue is a deadline in clock ticks (milliseconds
+ * by default). Entries only become visible to dequeue/front once the clock has
+ * reached their deadline; dequeue returns the earliest expired entry and throws
+ * if nothing has expired yet, even when the queue is not empty.
+ *
+ * There are LEVELS wheels of 64 slots. Level l slots span 64^l ticks, and an
+ * entry sits on the lowest level where its deadline shares every higher bit
+ * group with the wheel's cursor. When the cursor enters a slot's range the slot
+ * is cascaded one level down, until level 0 hands exact ticks to the expired
+ * list. Deadlines beyond the top wheel wait in an overflow list. A 64-bit
+ * occupancy mask per level lets the cursor jump straight over empty slots.
+ *
+ * enqueue and cancel are O(1): slots are circular doubly-linked lists with a
+ * sentinel, so a handle can unlink itself without searching. The exception is
+ * a deadline that is already overdue, which walks back from the tail of the
+ * expired list to its place; that is O(1) unless it is scheduled behind
+ * expired entries nobody has dequeued yet.
+ */
+public class TimingWheelPriorityQueue<T> implements PriorityQueue<T> {
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int LEVELS = 4; // 64^4 ticks, about 4.6 hours of milliseconds
+
+    private static final int IN_EXPIRED = -1;
+    private static final int IN_OVERFLOW = -2;
+    private static final int DETACHED = -3;
+
+    /** Handle to a scheduled entry, usable with cancel(). */
+    public static final class Timer<T> {
+        private final long deadline;
+        private final T data;
+        private Timer<T> prev = this;
+        private Timer<T> next = this;
+        private int level = DETACHED;
+        private int slot;
+
+        private Timer(long deadline, T data) {
+            this.deadline = deadline;
+            this.data = data;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public T getData() {
+            return data;
+        }
+
+        public boolean isPending() {
+            return level != DETACHED;
+        }
+    }
+
+    /** Clock that only moves when told to, for deterministic tests and benchmarks. */
+    public static final class ManualClock implements LongSupplier {
+        private long now;
+
+        public ManualClock(long start) {
+            this.now = start;
+        }
+
+        @Override
+        public long getAsLong() {
+            return now;
+        }
+
+        public void set(long now) {
+            this.now = now;
+        }
+
+        public void advance(long ticks) {
+            now += ticks;
+        }
+    }
+
+    private final LongSupplier clock;
+
+    private final Timer<T>[][] wheels; // sentinels, wheels[level][slot]
+    private final long[] occupied = new long[LEVELS];
+    private final Timer<T> expired = new Timer<>(0, null);
+    private final Timer<T> overflow = new Timer<>(0, null);
+
+    // every deadline < cursor has been moved to the expired list
+    private long cursor;
+    private int size;
+
+    /**
+     * Uses milliseconds elapsed since construction as the clock.
+     */
+    public TimingWheelPriorityQueue() {
+        this(elapsedMillis());
+    }
+
+    @SuppressWarnings("unchecked")
+    public TimingWheelPriorityQueue(LongSupplier clock) {
+        this.clock = clock;
+        this.cursor = clock.getAsLong();
+        this.wheels = (Timer<T>[][]) new Timer[LEVELS][SLOTS];
+        for (int l = 0; l < LEVELS; l++) {
+            for (int s = 0; s < SLOTS; s++) {
+                wheels[l][s] = new Timer<>(0, null);
+            }
+        }
+    }
+
+    private static LongSupplier elapsedMillis() {
+        long origin = System.nanoTime();
+        return () -> (System.nanoTime() - origin) / 1_000_000;
+    }
+
+    @Override
+    public void enqueue(int priority, T data) {
+        schedule(priority, data);
+    }
+
+    /**
+     * Schedules data to expire at the given deadline and returns its handle.
+     * A deadline already in the past goes straight onto the expired list, in
+     * deadline order behind any expired entries with the same or an earlier
+     * deadline.
+     */
+    public Timer<T> schedule(long deadline, T data) {
+        Timer<T> t = new Timer<>(deadline, data);
+        place(t);
+        size++;
+        return t;
+    }
+
+    /**
+     * Removes a pending entry in O(1).
+     *
+     * @return false if the entry had already been dequeued or cancelled
+     */
+    public boolean cancel(Timer<T> t) {
+        if (t.level == DETACHED) {
+            return false;
+        }
+        int level = t.level;
+        int slot = t.slot;
+        unlink(t);
+        if (level >= 0 && isEmpty(wheels[level][slot])) {
+            occupied[level] &= ~(1L << slot);
+        }
+        size--;
+        return true;
+    }
+
+    @Override
+    public T dequeue() throws Exception {
+        Timer<T> t = poll();
+        if (t == null) {
+            throw new Exception(size == 0 ? "PriorityQueue is empty" : "No entry has expired yet");
+        }
+        return t.data;
+    }
+
+    /**
+     * Removes and returns the earliest expired entry, or null if none has expired.
+     */
+    public Timer<T> poll() {
+        advance(clock.getAsLong());
+        if (isEmpty(expired)) {
+            return null;
+        }
+        Timer<T> t = expired.next;
+        unlink(t);
+        size--;
+        return t;
+    }
+
+    @Override
+    public T front() throws Exception {
+        advance(clock.getAsLong());
+        if (isEmpty(expired)) {
+            throw new Exception(size == 0 ? "PriorityQueue is empty" : "No entry has expired yet");
+        }
+        return expired.next.data;
+    }
+
+    /** Number of pending entries, expired or not. */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Puts t on the expired list, a wheel slot or the overflow list relative to cursor.
+    private void place(Timer<T> t) {
+        if (t.deadline < cursor) {
+            insertExpired(t);
+            return;
+        }
+        long diff = t.deadline ^ cursor;
+        int level = diff == 0 ? 0 : (63 - Long.numberOfLeadingZeros(diff)) / BITS;
+        if (level >= LEVELS) {
+            append(overflow, t, IN_OVERFLOW, 0);
+            return;
+        }
+        int slot = (int) (t.deadline >>> (level * BITS)) & (SLOTS - 1);
+        append(wheels[level][slot], t, level, slot);
+        occupied[level] |= 1L << slot;
+    }
+
+    // Moves everything with deadline <= now onto the expired list, in deadline order.
+    private void advance(long now) {
+        while (cursor <= now) {
+            boolean found = false;
+            for (int l = 0; l < LEVELS && !found; l++) {
+                int shift = l * BITS;
+                int idx = (int) (cursor >>> shift) & (SLOTS - 1);
+                // level 0 includes the cursor's own tick; higher levels only look ahead,
+                // because the slot under the cursor was cascaded when the cursor entered it
+                long mask = l == 0 ? -1L << idx : (idx == SLOTS - 1 ? 0 : -1L << (idx + 1));
+                long bits = occupied[l] & mask;
+                if (bits == 0) {
+                    continue;
+                }
+                found = true;
+
+                int s = Long.numberOfTrailingZeros(bits);
+                long start = (cursor >>> (shift + BITS) << (shift + BITS)) | ((long) s << shift);
+                if (l == 0) {
+                    if (start > now) {
+                        cursor = now + 1;
+                        return;
+                    }
+                    cursor = start;
+                    spliceToExpired(wheels[0][s]);
+                    occupied[0] &= ~(1L << s);
+                } else {
+                    if (start > now + 1) {
+                        cursor = now + 1;
+                        return;
+                    }
+                    cursor = start;
+                    cascade(l, s);
+                }
+            }
+
+            if (!found) {
+                long start = ((cursor >>> (LEVELS * BITS)) + 1) << (LEVELS * BITS);
+                if (isEmpty(overflow) || start > now + 1) {
+                    cursor = Math.max(cursor, now + 1);
+                    return;
+                }
+                cursor = start;
+                replaceAll(overflow);
+            }
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        occupied[level] &= ~(1L << slot);
+        replaceAll(wheels[level][slot]);
+    }
+
+    // Re-places every entry of a list relative to the current cursor.
+    private void replaceAll(Timer<T> sentinel) {
+        Timer<T> t = sentinel.next;
+        sentinel.next = sentinel;
+        sentinel.prev = sentinel;
+        while (t != sentinel) {
+            Timer<T> next = t.next;
+            place(t);
+            t = next;
+        }
+    }
+
+    private void spliceToExpired(Timer<T> sentinel) {
+        for (Timer<T> t = sentinel.next; t != sentinel; t = t.next) {
+            t.level = IN_EXPIRED;
+        }
+        Timer<T> first = sentinel.next;
+        Timer<T> last = sentinel.prev;
+        Timer<T> tail = expired.prev;
+        tail.next = first;
+        first.prev = tail;
+        last.next = expired;
+        expired.prev = last;
+        sentinel.next = sentinel;
+        sentinel.prev = sentinel;
+    }
+
+    // Keeps the expired list in deadline order, FIFO among equal deadlines.
+    private void insertExpired(Timer<T> t) {
+        Timer<T> p = expired.prev;
+        while (p != expired && p.deadline > t.deadline) {
+            p = p.prev;
+        }
+        t.prev = p;
+        t.next = p.next;
+        p.next.prev = t;
+        p.next = t;
+        t.level = IN_EXPIRED;
+        t.slot = 0;
+    }
+
+    private static <T> boolean isEmpty(Timer<T> sentinel) {
+        return sentinel.next == sentinel;
+    }
+
+    private static <T> void append(Timer<T> sentinel, Timer<T> t, int level, int slot) {
+        Timer<T> tail = sentinel.prev;
+        t.prev = tail;
+        t.next = sentinel;
+        tail.next = t;
+        sentinel.prev = t;
+        t.level = level;
+        t.slot = slot;
+    }
+
+    private static <T> void unlink(Timer<T> t) {
+        t.prev.next = t.next;
+        t.next.prev = t.prev;
+        t.prev = t;
+        t.next = t;
+        t.level = DETACHED;
+    }
+}
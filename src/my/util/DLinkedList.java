@@ -42,12 +42,30 @@ public class DLinkedList<T> {
         }
     }
 
+    /**
+     * Returns the first node ... null if list is empty
+     *
+     * @return null if list is empty
+     */
+    public DNode<T> getFirst() {
+        return head;
+    }
+
+    /**
+     * Returns the last node ... null if list is empty
+     *
+     * @return null if list is empty
+     */
+    public DNode<T> getLast() {
+        return tail;
+    }
+
     // need to break the connection between node and whatever its current "next" is
-    public void addAfter(DNode<T> node, T data) {
+    public DNode<T> addAfter(DNode<T> node, T data) {
         if (node == tail) {
-            add(data); // already adds at the tail
+            return add(data); // already adds at the tail
         } else if (node == null) {
-            addFirst(data); // already adds at the head
+            return addFirst(data); // already adds at the head
         } else {
             // normal case where we are not adding at the beginning or the end
             // the constructor alone lets us set the prev and next for the new node
@@ -59,14 +77,15 @@ public class DLinkedList<T> {
             // And we need to update the next on the node we are being added after
             node.setNext(newnode);
             size++;
+            return newnode;
         }
     }
 
-    public void addBefore(DNode<T> node, T data) {
+    public DNode<T> addBefore(DNode<T> node, T data) {
         if (node == head) {
-            addFirst(data); // already adds at the head
+            return addFirst(data); // already adds at the head
         } else if (node == null) {
-            add(data); // already adds at the tail
+            return add(data); // already adds at the tail
         } else {
             // normal case where we are not adding at the beginning or the end
             // the constructor alone lets us set the prev and next for the new node
@@ -78,6 +97,7 @@ public class DLinkedList<T> {
             // And we need to update the prev on the node we are being added before
             node.setPrev(newnode);
             size++;
+            return newnode;
         }
     }
 